@@ -45,10 +45,19 @@ public class Stake implements Contract{
     private BigInteger  rewardRate            = BigInteger.ONE;     // Current Distribution Reward Rate
     private BigInteger  _totalSupply          = BigInteger.ZERO;    // Total upply deposited in Contract
 
+    private long        epochLength           = 0;                  // Epoch length in seconds, 0 accrues rewards per second
+    private BigInteger  pendingSupply         = BigInteger.ZERO;    // Supply staked in the current epoch, active from the next one
+    private long        pendingSupplyEpoch    = 0;                  // Epoch when the pending supply was staked
+    private long        eventSequence         = 0;                  // Sequence number of the last event emitted
+
     private Map<Address, BigInteger> userRewardPerTokenPaid = new HashMap<Address, BigInteger>(); // User reward per token deposited
     private Map<Address, BigInteger> rewards                = new HashMap<Address, BigInteger>(); // Rewards Earned by User
     private Map<Address, BigInteger> _balances              = new HashMap<Address, BigInteger>(); // User ORA Tokens Deposited
     private Map<Address, BigInteger> allTimeRewards         = new HashMap<Address, BigInteger>(); // All Time Rewards Earned by User
+    private Map<Address, BigInteger> pendingBalances        = new HashMap<Address, BigInteger>(); // User ORA Tokens waiting for the next epoch
+    private Map<Address, Integer>    pendingActivations     = new HashMap<Address, Integer>();    // Activation where user pending tokens become active
+
+    private List<BigInteger> epochRewardPerToken = new ArrayList<BigInteger>(); // Reward per token at each epoch boundary where pending stakes became active
 
     /**
      * Constructor
@@ -137,7 +146,40 @@ public class Stake implements Contract{
      */
     @View
     public BigInteger totalSupply() {
-        return _totalSupply;
+        return _totalSupply.add(pendingSupply);
+    }
+
+    /**
+     * Returns Nuls Oracle Tokens (ORA) deposited in the current epoch
+     * that will only earn rewards from the next epoch
+     *
+     * @return Tokens pending activation
+     */
+    @View
+    public BigInteger getPendingSupply() {
+        return pendingSupply;
+    }
+
+    /**
+     * Returns Epoch Length, 0 when rewards accrue per second
+     *
+     * @return epoch length in seconds
+     */
+    @View
+    public long getEpochLength() {
+        return epochLength;
+    }
+
+    /**
+     * Returns Reward per token when the pending stakes of an activation became active
+     *
+     * @param activation Activation index
+     * @return reward per token at the activation epoch boundary
+     */
+    @View
+    public BigInteger getEpochRewardPerToken(int activation) {
+        require(activation >= 0 && activation < epochRewardPerToken.size(), "Invalid Activation");
+        return epochRewardPerToken.get(activation);
     }
 
 
@@ -161,6 +203,16 @@ public class Stake implements Contract{
         return rewardRate;
     }
 
+    /**
+     * Returns Sequence number of the last event emitted
+     *
+     * @return last event sequence number
+     */
+    @View
+    public long getEventSequence() {
+        return eventSequence;
+    }
+
     /**
      * Returns Reward Rate per token deposited
      *
@@ -204,13 +256,14 @@ public class Stake implements Contract{
     }
 
     /**
-     *  Returns Until when rewards will last
+     *  Returns Until when rewards will last, in epoch mode
+     *  rewards only count until the start of the current epoch
      *
      * @return until when rewards will last
      */
     @View
     public long lastTimeRewardApplicable() {
-        long timestamp = Block.timestamp();
+        long timestamp = currentTime();
         return timestamp < periodFinish ? timestamp : periodFinish;
     }
 
@@ -245,15 +298,31 @@ public class Stake implements Contract{
     }
 
     /**
-     * Returns Nuls Oracle Tokens (ORA) balance
+     * Returns Nuls Oracle Tokens (ORA) balance, including tokens pending activation
      *
      * @param account User address
      * @return User Nuls Oracle Tokens (ORA) balance
      */
     @View
     public BigInteger _balanceOf(Address account) {
-        if (_balances.get(account) != null) {
-            return _balances.get(account);
+        BigInteger balance = _activeBalanceOf(account);
+        if (pendingBalances.get(account) != null) {
+            balance = balance.add(pendingBalances.get(account));
+        }
+        return balance;
+    }
+
+    /**
+     * Returns Nuls Oracle Tokens (ORA) deposited by user
+     * that are still waiting for the next epoch to earn rewards
+     *
+     * @param account User address
+     * @return User Nuls Oracle Tokens (ORA) pending activation
+     */
+    @View
+    public BigInteger getPendingBalance(Address account) {
+        if (pendingBalances.get(account) != null && pendingStakeActivation(account) == null) {
+            return pendingBalances.get(account);
         } else {
             return BigInteger.ZERO;
         }
@@ -318,6 +387,8 @@ public class Stake implements Contract{
         require(Msg.value().compareTo(operationFee) >= 0, "Operation Fee not Paid");
 
         treasury.transfer(operationFee);
+        emit(new OperationFeePaid(nextEventSequence(), Msg.sender(), treasury, operationFee,
+                rewards.get(Msg.sender()), rewardPerTokenStored, lastUpdateTime));
 
         // Get user allowance and check if it is bigger than the amount to stake
         BigInteger allowance = getUserAllowance(stakingToken, Msg.sender(), Msg.address());
@@ -326,18 +397,36 @@ public class Stake implements Contract{
         // Transfer ORA tokens from user to this contract
         safeTransferFrom(stakingToken, Msg.sender(), Msg.address(), amount);
 
-        // Add the stake amount to the total added
-        _totalSupply = _totalSupply.add(amount);
+        if (epochLength > 0) {
+
+            // In epoch mode the stake only becomes active at the next epoch boundary
+            pendingSupply = pendingSupply.add(amount);
+            pendingSupplyEpoch = currentEpoch();
+
+            if (pendingBalances.get(Msg.sender()) != null) {
+                pendingBalances.put(Msg.sender(), pendingBalances.get(Msg.sender()).add(amount));
+            } else {
+                pendingBalances.put(Msg.sender(), amount);
+            }
+            pendingActivations.put(Msg.sender(), epochRewardPerToken.size());
 
-        // Check if the user balance exists and adds the stake amount to the all user staked
-        if (_balances.get(Msg.sender()) != null) {
-            _balances.put(Msg.sender(), _balances.get(Msg.sender()).add(amount));
         } else {
-            _balances.put(Msg.sender(), amount);
+
+            // Add the stake amount to the total added
+            _totalSupply = _totalSupply.add(amount);
+
+            // Check if the user balance exists and adds the stake amount to the all user staked
+            if (_balances.get(Msg.sender()) != null) {
+                _balances.put(Msg.sender(), _balances.get(Msg.sender()).add(amount));
+            } else {
+                _balances.put(Msg.sender(), amount);
+            }
         }
 
-        // Emit event with the Stake event
-        emit(new Staked(Msg.sender(), amount));
+        // Emit event with the Stake event and the resulting state
+        emit(new Staked(nextEventSequence(), Msg.sender(), amount, _balanceOf(Msg.sender()),
+                _pendingBalanceOf(Msg.sender()), pendingActivationOf(Msg.sender()), totalSupply(), pendingSupply,
+                rewardPerTokenStored, rewardRate, periodFinish));
 
         // Close Reentrancy Attacks Prevention
         closeReentrant();
@@ -361,6 +450,8 @@ public class Stake implements Contract{
 
         require(Msg.value().compareTo(operationFee) >= 0, "Operation Fee not Paid");
         treasury.transfer(operationFee);
+        emit(new OperationFeePaid(nextEventSequence(), Msg.sender(), treasury, operationFee,
+                rewards.get(Msg.sender()), rewardPerTokenStored, lastUpdateTime));
 
         // Get amount of rewards
         BigInteger trueReward = rewards.get(Msg.sender());
@@ -376,7 +467,9 @@ public class Stake implements Contract{
             }else{
                 allTimeRewards.put(Msg.sender(), allTimeRewards.get(Msg.sender()).add(trueReward));
             }
-            emit(new RewardPaid(Msg.sender(), trueReward));
+            emit(new RewardPaid(nextEventSequence(), Msg.sender(), trueReward, _balanceOf(Msg.sender()),
+                    _pendingBalanceOf(Msg.sender()), totalSupply(), pendingSupply,
+                    rewardPerTokenStored, rewardRate, periodFinish));
         }
 
         // Close Reentrancy Attacks Prevention
@@ -403,26 +496,31 @@ public class Stake implements Contract{
         //Update last time disributed rewards
         updateReward(null);
 
+        // In epoch mode the new period starts at the current epoch boundary,
+        // or when rewards were last updated if the mode was just switched
+        long timestamp = Math.max(currentTime(), lastUpdateTime);
+
         // If rewards period already finished or not even started
         // then create a new period, if otherwise
         // then increment rewards to the current rewards
-        if (Block.timestamp() >= periodFinish) {
+        if (timestamp >= periodFinish) {
 
             rewardRate = reward.divide(BigInteger.valueOf(DURATION));
 
         } else {
 
-            BigInteger remaining = BigInteger.valueOf(periodFinish).subtract(BigInteger.valueOf(Block.timestamp()));
+            BigInteger remaining = BigInteger.valueOf(periodFinish).subtract(BigInteger.valueOf(timestamp));
             BigInteger leftover = remaining.multiply(rewardRate);
             rewardRate = reward.add(leftover).divide(BigInteger.valueOf(DURATION));
 
         }
 
         // Update last revenue distribution time and revenue distribution period
-        lastUpdateTime = Block.timestamp();
-        periodFinish = Block.timestamp() + DURATION;
+        lastUpdateTime = timestamp;
+        periodFinish = timestamp + DURATION;
 
-        emit(new RewardAdded(reward));
+        emit(new RewardAdded(nextEventSequence(), reward, lastUpdateTime,
+                totalSupply(), rewardPerTokenStored, rewardRate, periodFinish));
 
         // Close Reentrancy Attacks Prevention
         closeReentrant();
@@ -468,6 +566,27 @@ public class Stake implements Contract{
         operationFee = newFee;
     }
 
+    /**
+     * Set Epoch Length, in epoch mode the reward per token only advances
+     * once per epoch and stakes become active at the next epoch boundary.
+     * Rewards accrue per second when set to 0
+     *
+     * @param newEpochLength new epoch length in seconds
+     */
+    public void setEpochLength(long newEpochLength){
+        onlyRewardDistribution();
+        require(newEpochLength >= 0, "Invalid Epoch Length");
+
+        // Settle rewards with the current mode before switching
+        updateReward(null);
+        require(pendingSupply.equals(BigInteger.ZERO), "Stakes Pending Activation");
+
+        epochLength = newEpochLength;
+
+        emit(new EpochLengthChanged(nextEventSequence(), epochLength, totalSupply(),
+                rewardPerTokenStored, lastUpdateTime, rewardRate, periodFinish));
+    }
+
     /**
      *  Set New Rewards Distribution/Admin Address
      *
@@ -520,20 +639,70 @@ public class Stake implements Contract{
      * @param account User Address
      */
     private void updateReward(Address account) {
-        rewardPerTokenStored = rewardPerToken();
-        lastUpdateTime = lastTimeRewardApplicable();
+        if (epochLength > 0) {
+            updateEpoch();
+        } else {
+            rewardPerTokenStored = rewardPerToken();
+            lastUpdateTime = lastTimeRewardApplicable();
+        }
         if (account != null) {
             rewards.put(account, _earned(account));
+            activatePendingStake(account);
             userRewardPerTokenPaid.put(account, rewardPerTokenStored);
         }
     }
 
+    /**
+     * Advances rewards per token stored to the current epoch boundary,
+     *  activating the stakes made in the previous epoch. Within the
+     *  same epoch nothing is updated
+     */
+    private void updateEpoch() {
+        if (pendingActivationDue()) {
+            rewardPerTokenStored = rewardPerTokenAtActivation();
+            lastUpdateTime = activationTime();
+            epochRewardPerToken.add(rewardPerTokenStored);
+            _totalSupply = _totalSupply.add(pendingSupply);
+            pendingSupply = BigInteger.ZERO;
+
+            // Announced so mirrors see the activation even when the call emits nothing else about it
+            emit(new PendingSupplyActivated(nextEventSequence(), epochRewardPerToken.size() - 1,
+                    rewardPerTokenStored, lastUpdateTime, totalSupply()));
+        }
+
+        long applicable = lastTimeRewardApplicable();
+        if (applicable > lastUpdateTime) {
+            rewardPerTokenStored = accrue(rewardPerTokenStored, lastUpdateTime, applicable, _totalSupply);
+            lastUpdateTime = applicable;
+        }
+    }
+
+    /**
+     * Moves user pending tokens to the user balance once they are active
+     *
+     * @param account User Address
+     */
+    private void activatePendingStake(Address account) {
+        if (pendingBalances.get(account) != null && pendingActivations.get(account) < epochRewardPerToken.size()) {
+            _balances.put(account, _activeBalanceOf(account).add(pendingBalances.get(account)));
+            pendingBalances.remove(account);
+            pendingActivations.remove(account);
+        }
+    }
+
     /**
      * Returns all rewards per token deposited
      *
      * @return Rewards per token deposited
      */
     private BigInteger rewardPerToken() {
+        if (epochLength > 0) {
+            if (pendingActivationDue()) {
+                return accrue(rewardPerTokenAtActivation(), activationTime(), lastTimeRewardApplicable(), _totalSupply.add(pendingSupply));
+            }
+            return accrue(rewardPerTokenStored, lastUpdateTime, lastTimeRewardApplicable(), _totalSupply);
+        }
+
         if (_totalSupply.equals(BigInteger.ZERO)) {
             return rewardPerTokenStored;
         }
@@ -562,11 +731,160 @@ public class Stake implements Contract{
         if (rewards.get(account) != null) {
             reward = reward.add(rewards.get(account));
         }
-        return _balanceOf(account).multiply(rewardPerToken().subtract(userRewardPer)).
+        BigInteger rewardPerToken = rewardPerToken();
+
+        // Pending tokens earn from the epoch boundary where they became active
+        BigInteger activation = pendingStakeActivation(account);
+        if (activation != null) {
+            reward = reward.add(pendingBalances.get(account).multiply(rewardPerToken.subtract(activation)).
+                    divide(BigInteger.valueOf((long) 1e8)));
+        }
+
+        return _activeBalanceOf(account).multiply(rewardPerToken.subtract(userRewardPer)).
                 divide(BigInteger.valueOf((long) 1e8)).add(reward);
 
     }
 
+    /**
+     * Returns user tokens that are earning rewards
+     *
+     * @param account User Address
+     * @return user active balance
+     */
+    private BigInteger _activeBalanceOf(Address account) {
+        if (_balances.get(account) != null) {
+            return _balances.get(account);
+        } else {
+            return BigInteger.ZERO;
+        }
+    }
+
+    /**
+     * Returns user tokens waiting for activation, including the ones
+     *  already active but not yet moved to the user balance
+     *
+     * @param account User Address
+     * @return user pending balance
+     */
+    private BigInteger _pendingBalanceOf(Address account) {
+        if (pendingBalances.get(account) != null) {
+            return pendingBalances.get(account);
+        } else {
+            return BigInteger.ZERO;
+        }
+    }
+
+    /**
+     * Returns the activation where user pending tokens become active
+     *
+     * @param account User Address
+     * @return activation index, -1 if the user has no pending tokens
+     */
+    private int pendingActivationOf(Address account) {
+        if (pendingActivations.get(account) != null) {
+            return pendingActivations.get(account);
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns reward per token when user pending tokens became active
+     *
+     * @param account User Address
+     * @return reward per token at activation, null if there are no active pending tokens
+     */
+    private BigInteger pendingStakeActivation(Address account) {
+        if (pendingBalances.get(account) == null) {
+            return null;
+        }
+        int activation = pendingActivations.get(account);
+        if (activation < epochRewardPerToken.size()) {
+            return epochRewardPerToken.get(activation);
+        }
+        if (pendingActivationDue()) {
+            return rewardPerTokenAtActivation();
+        }
+        return null;
+    }
+
+    /**
+     * Returns if the pending supply already reached its epoch boundary
+     *
+     * @return true if the pending supply must be activated
+     */
+    private boolean pendingActivationDue() {
+        return epochLength > 0 && pendingSupply.compareTo(BigInteger.ZERO) > 0 && pendingSupplyEpoch < currentEpoch();
+    }
+
+    /**
+     * Returns when the pending supply becomes active, limited by the rewards period
+     *
+     * @return activation time
+     */
+    private long activationTime() {
+        long boundary = (pendingSupplyEpoch + 1) * epochLength;
+        return Math.max(lastUpdateTime, boundary < periodFinish ? boundary : periodFinish);
+    }
+
+    /**
+     * Returns rewards per token stored accrued until the pending supply becomes active
+     *
+     * @return reward per token at activation
+     */
+    private BigInteger rewardPerTokenAtActivation() {
+        return accrue(rewardPerTokenStored, lastUpdateTime, activationTime(), _totalSupply);
+    }
+
+    /**
+     * Adds the rewards per token distributed between two moments
+     *
+     * @param rewardPerToken Reward per token at start
+     * @param from Start time
+     * @param to End time
+     * @param supply Supply earning rewards in between
+     * @return reward per token at end
+     */
+    private BigInteger accrue(BigInteger rewardPerToken, long from, long to, BigInteger supply) {
+        if (to <= from || supply.equals(BigInteger.ZERO)) {
+            return rewardPerToken;
+        }
+        return rewardPerToken.
+                add(BigInteger.valueOf(to - from).
+                        multiply(rewardRate).
+                        multiply(BigInteger.valueOf((long) 1e8)).
+                        divide(supply));
+    }
+
+    /**
+     * Returns the current epoch, 0 when rewards accrue per second
+     *
+     * @return current epoch
+     */
+    private long currentEpoch() {
+        return epochLength > 0 ? Block.timestamp() / epochLength : 0;
+    }
+
+    /**
+     * Returns block timestamp, rounded down to the epoch start in epoch mode
+     *
+     * @return current time used for rewards
+     */
+    private long currentTime() {
+        return epochLength > 0 ? currentEpoch() * epochLength : Block.timestamp();
+    }
+
+    /**
+     * Returns the sequence number for a new event,
+     *  events carry it so consumers can detect gaps in the stream
+     *
+     * @return event sequence number
+     */
+    private long nextEventSequence() {
+        eventSequence = eventSequence + 1;
+        return eventSequence;
+    }
+
     /**
      *  Transfer token from this contract to recipient address
      *
@@ -615,12 +933,38 @@ public class Stake implements Contract{
 
 
     class Staked implements Event {
+        private long sequence;
         private Address user;
         private BigInteger amount;
-
-        public Staked(Address user, BigInteger amount) {
+        private BigInteger balance;
+        private BigInteger pendingBalance;
+        private int activation;
+        private BigInteger totalSupply;
+        private BigInteger pendingSupply;
+        private BigInteger rewardPerTokenStored;
+        private BigInteger rewardRate;
+        private long periodFinish;
+
+        public Staked(long sequence, Address user, BigInteger amount, BigInteger balance, BigInteger pendingBalance, int activation, BigInteger totalSupply, BigInteger pendingSupply, BigInteger rewardPerTokenStored, BigInteger rewardRate, long periodFinish) {
+            this.sequence = sequence;
             this.user = user;
             this.amount = amount;
+            this.balance = balance;
+            this.pendingBalance = pendingBalance;
+            this.activation = activation;
+            this.totalSupply = totalSupply;
+            this.pendingSupply = pendingSupply;
+            this.rewardPerTokenStored = rewardPerTokenStored;
+            this.rewardRate = rewardRate;
+            this.periodFinish = periodFinish;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public void setSequence(long sequence) {
+            this.sequence = sequence;
         }
 
         public Address getUser() {
@@ -639,6 +983,70 @@ public class Stake implements Contract{
             this.amount = amount;
         }
 
+        public BigInteger getBalance() {
+            return balance;
+        }
+
+        public void setBalance(BigInteger balance) {
+            this.balance = balance;
+        }
+
+        public BigInteger getPendingBalance() {
+            return pendingBalance;
+        }
+
+        public void setPendingBalance(BigInteger pendingBalance) {
+            this.pendingBalance = pendingBalance;
+        }
+
+        public int getActivation() {
+            return activation;
+        }
+
+        public void setActivation(int activation) {
+            this.activation = activation;
+        }
+
+        public BigInteger getTotalSupply() {
+            return totalSupply;
+        }
+
+        public void setTotalSupply(BigInteger totalSupply) {
+            this.totalSupply = totalSupply;
+        }
+
+        public BigInteger getPendingSupply() {
+            return pendingSupply;
+        }
+
+        public void setPendingSupply(BigInteger pendingSupply) {
+            this.pendingSupply = pendingSupply;
+        }
+
+        public BigInteger getRewardPerTokenStored() {
+            return rewardPerTokenStored;
+        }
+
+        public void setRewardPerTokenStored(BigInteger rewardPerTokenStored) {
+            this.rewardPerTokenStored = rewardPerTokenStored;
+        }
+
+        public BigInteger getRewardRate() {
+            return rewardRate;
+        }
+
+        public void setRewardRate(BigInteger rewardRate) {
+            this.rewardRate = rewardRate;
+        }
+
+        public long getPeriodFinish() {
+            return periodFinish;
+        }
+
+        public void setPeriodFinish(long periodFinish) {
+            this.periodFinish = periodFinish;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -646,34 +1054,85 @@ public class Stake implements Contract{
 
             Staked that = (Staked) o;
 
+            if (sequence != that.sequence) return false;
             if (user != null ? !user.equals(that.user) : that.user != null) return false;
-            return amount != null ? amount.equals(that.amount) : that.amount == null;
+            if (amount != null ? !amount.equals(that.amount) : that.amount != null) return false;
+            if (balance != null ? !balance.equals(that.balance) : that.balance != null) return false;
+            if (pendingBalance != null ? !pendingBalance.equals(that.pendingBalance) : that.pendingBalance != null) return false;
+            if (activation != that.activation) return false;
+            if (totalSupply != null ? !totalSupply.equals(that.totalSupply) : that.totalSupply != null) return false;
+            if (pendingSupply != null ? !pendingSupply.equals(that.pendingSupply) : that.pendingSupply != null) return false;
+            if (rewardPerTokenStored != null ? !rewardPerTokenStored.equals(that.rewardPerTokenStored) : that.rewardPerTokenStored != null) return false;
+            if (rewardRate != null ? !rewardRate.equals(that.rewardRate) : that.rewardRate != null) return false;
+            return periodFinish == that.periodFinish;
         }
 
         @Override
         public int hashCode() {
-            int result = user != null ? user.hashCode() : 0;
+            int result = (int) (sequence ^ (sequence >>> 32));
+            result = 31 * result + (user != null ? user.hashCode() : 0);
             result = 31 * result + (amount != null ? amount.hashCode() : 0);
+            result = 31 * result + (balance != null ? balance.hashCode() : 0);
+            result = 31 * result + (pendingBalance != null ? pendingBalance.hashCode() : 0);
+            result = 31 * result + activation;
+            result = 31 * result + (totalSupply != null ? totalSupply.hashCode() : 0);
+            result = 31 * result + (pendingSupply != null ? pendingSupply.hashCode() : 0);
+            result = 31 * result + (rewardPerTokenStored != null ? rewardPerTokenStored.hashCode() : 0);
+            result = 31 * result + (rewardRate != null ? rewardRate.hashCode() : 0);
+            result = 31 * result + (int) (periodFinish ^ (periodFinish >>> 32));
             return result;
         }
 
-
         @Override
         public String toString() {
             return "Staked{" +
-                    "user=" + user +
+                    "sequence=" + sequence +
+                    ", user=" + user +
                     ", amount=" + amount +
+                    ", balance=" + balance +
+                    ", pendingBalance=" + pendingBalance +
+                    ", activation=" + activation +
+                    ", totalSupply=" + totalSupply +
+                    ", pendingSupply=" + pendingSupply +
+                    ", rewardPerTokenStored=" + rewardPerTokenStored +
+                    ", rewardRate=" + rewardRate +
+                    ", periodFinish=" + periodFinish +
                     '}';
         }
     }
 
+
     class RewardPaid implements Event {
+        private long sequence;
         private Address user;
         private BigInteger amount;
-
-        public RewardPaid(Address user, BigInteger amount) {
+        private BigInteger balance;
+        private BigInteger pendingBalance;
+        private BigInteger totalSupply;
+        private BigInteger pendingSupply;
+        private BigInteger rewardPerTokenStored;
+        private BigInteger rewardRate;
+        private long periodFinish;
+
+        public RewardPaid(long sequence, Address user, BigInteger amount, BigInteger balance, BigInteger pendingBalance, BigInteger totalSupply, BigInteger pendingSupply, BigInteger rewardPerTokenStored, BigInteger rewardRate, long periodFinish) {
+            this.sequence = sequence;
             this.user = user;
             this.amount = amount;
+            this.balance = balance;
+            this.pendingBalance = pendingBalance;
+            this.totalSupply = totalSupply;
+            this.pendingSupply = pendingSupply;
+            this.rewardPerTokenStored = rewardPerTokenStored;
+            this.rewardRate = rewardRate;
+            this.periodFinish = periodFinish;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public void setSequence(long sequence) {
+            this.sequence = sequence;
         }
 
         public Address getUser() {
@@ -692,6 +1151,62 @@ public class Stake implements Contract{
             this.amount = amount;
         }
 
+        public BigInteger getBalance() {
+            return balance;
+        }
+
+        public void setBalance(BigInteger balance) {
+            this.balance = balance;
+        }
+
+        public BigInteger getPendingBalance() {
+            return pendingBalance;
+        }
+
+        public void setPendingBalance(BigInteger pendingBalance) {
+            this.pendingBalance = pendingBalance;
+        }
+
+        public BigInteger getTotalSupply() {
+            return totalSupply;
+        }
+
+        public void setTotalSupply(BigInteger totalSupply) {
+            this.totalSupply = totalSupply;
+        }
+
+        public BigInteger getPendingSupply() {
+            return pendingSupply;
+        }
+
+        public void setPendingSupply(BigInteger pendingSupply) {
+            this.pendingSupply = pendingSupply;
+        }
+
+        public BigInteger getRewardPerTokenStored() {
+            return rewardPerTokenStored;
+        }
+
+        public void setRewardPerTokenStored(BigInteger rewardPerTokenStored) {
+            this.rewardPerTokenStored = rewardPerTokenStored;
+        }
+
+        public BigInteger getRewardRate() {
+            return rewardRate;
+        }
+
+        public void setRewardRate(BigInteger rewardRate) {
+            this.rewardRate = rewardRate;
+        }
+
+        public long getPeriodFinish() {
+            return periodFinish;
+        }
+
+        public void setPeriodFinish(long periodFinish) {
+            this.periodFinish = periodFinish;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -699,32 +1214,76 @@ public class Stake implements Contract{
 
             RewardPaid that = (RewardPaid) o;
 
+            if (sequence != that.sequence) return false;
             if (user != null ? !user.equals(that.user) : that.user != null) return false;
-            return amount != null ? amount.equals(that.amount) : that.amount == null;
+            if (amount != null ? !amount.equals(that.amount) : that.amount != null) return false;
+            if (balance != null ? !balance.equals(that.balance) : that.balance != null) return false;
+            if (pendingBalance != null ? !pendingBalance.equals(that.pendingBalance) : that.pendingBalance != null) return false;
+            if (totalSupply != null ? !totalSupply.equals(that.totalSupply) : that.totalSupply != null) return false;
+            if (pendingSupply != null ? !pendingSupply.equals(that.pendingSupply) : that.pendingSupply != null) return false;
+            if (rewardPerTokenStored != null ? !rewardPerTokenStored.equals(that.rewardPerTokenStored) : that.rewardPerTokenStored != null) return false;
+            if (rewardRate != null ? !rewardRate.equals(that.rewardRate) : that.rewardRate != null) return false;
+            return periodFinish == that.periodFinish;
         }
 
         @Override
         public int hashCode() {
-            int result = user != null ? user.hashCode() : 0;
+            int result = (int) (sequence ^ (sequence >>> 32));
+            result = 31 * result + (user != null ? user.hashCode() : 0);
             result = 31 * result + (amount != null ? amount.hashCode() : 0);
+            result = 31 * result + (balance != null ? balance.hashCode() : 0);
+            result = 31 * result + (pendingBalance != null ? pendingBalance.hashCode() : 0);
+            result = 31 * result + (totalSupply != null ? totalSupply.hashCode() : 0);
+            result = 31 * result + (pendingSupply != null ? pendingSupply.hashCode() : 0);
+            result = 31 * result + (rewardPerTokenStored != null ? rewardPerTokenStored.hashCode() : 0);
+            result = 31 * result + (rewardRate != null ? rewardRate.hashCode() : 0);
+            result = 31 * result + (int) (periodFinish ^ (periodFinish >>> 32));
             return result;
         }
 
         @Override
         public String toString() {
-            return "Withdrawn{" +
-                    "user=" + user +
+            return "RewardPaid{" +
+                    "sequence=" + sequence +
+                    ", user=" + user +
                     ", amount=" + amount +
+                    ", balance=" + balance +
+                    ", pendingBalance=" + pendingBalance +
+                    ", totalSupply=" + totalSupply +
+                    ", pendingSupply=" + pendingSupply +
+                    ", rewardPerTokenStored=" + rewardPerTokenStored +
+                    ", rewardRate=" + rewardRate +
+                    ", periodFinish=" + periodFinish +
                     '}';
         }
     }
 
 
     class RewardAdded implements Event {
+        private long sequence;
         private BigInteger reward;
-
-        public RewardAdded(BigInteger reward) {
+        private long lastUpdateTime;
+        private BigInteger totalSupply;
+        private BigInteger rewardPerTokenStored;
+        private BigInteger rewardRate;
+        private long periodFinish;
+
+        public RewardAdded(long sequence, BigInteger reward, long lastUpdateTime, BigInteger totalSupply, BigInteger rewardPerTokenStored, BigInteger rewardRate, long periodFinish) {
+            this.sequence = sequence;
             this.reward = reward;
+            this.lastUpdateTime = lastUpdateTime;
+            this.totalSupply = totalSupply;
+            this.rewardPerTokenStored = rewardPerTokenStored;
+            this.rewardRate = rewardRate;
+            this.periodFinish = periodFinish;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public void setSequence(long sequence) {
+            this.sequence = sequence;
         }
 
         public BigInteger getReward() {
@@ -735,28 +1294,414 @@ public class Stake implements Contract{
             this.reward = reward;
         }
 
+        public long getLastUpdateTime() {
+            return lastUpdateTime;
+        }
+
+        public void setLastUpdateTime(long lastUpdateTime) {
+            this.lastUpdateTime = lastUpdateTime;
+        }
+
+        public BigInteger getTotalSupply() {
+            return totalSupply;
+        }
+
+        public void setTotalSupply(BigInteger totalSupply) {
+            this.totalSupply = totalSupply;
+        }
+
+        public BigInteger getRewardPerTokenStored() {
+            return rewardPerTokenStored;
+        }
+
+        public void setRewardPerTokenStored(BigInteger rewardPerTokenStored) {
+            this.rewardPerTokenStored = rewardPerTokenStored;
+        }
+
+        public BigInteger getRewardRate() {
+            return rewardRate;
+        }
+
+        public void setRewardRate(BigInteger rewardRate) {
+            this.rewardRate = rewardRate;
+        }
+
+        public long getPeriodFinish() {
+            return periodFinish;
+        }
+
+        public void setPeriodFinish(long periodFinish) {
+            this.periodFinish = periodFinish;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            RewardAdded that = (RewardAdded) o;
+
+            if (sequence != that.sequence) return false;
+            if (reward != null ? !reward.equals(that.reward) : that.reward != null) return false;
+            if (lastUpdateTime != that.lastUpdateTime) return false;
+            if (totalSupply != null ? !totalSupply.equals(that.totalSupply) : that.totalSupply != null) return false;
+            if (rewardPerTokenStored != null ? !rewardPerTokenStored.equals(that.rewardPerTokenStored) : that.rewardPerTokenStored != null) return false;
+            if (rewardRate != null ? !rewardRate.equals(that.rewardRate) : that.rewardRate != null) return false;
+            return periodFinish == that.periodFinish;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (sequence ^ (sequence >>> 32));
+            result = 31 * result + (reward != null ? reward.hashCode() : 0);
+            result = 31 * result + (int) (lastUpdateTime ^ (lastUpdateTime >>> 32));
+            result = 31 * result + (totalSupply != null ? totalSupply.hashCode() : 0);
+            result = 31 * result + (rewardPerTokenStored != null ? rewardPerTokenStored.hashCode() : 0);
+            result = 31 * result + (rewardRate != null ? rewardRate.hashCode() : 0);
+            result = 31 * result + (int) (periodFinish ^ (periodFinish >>> 32));
+            return result;
+        }
+
         @Override
         public String toString() {
             return "RewardAdded{" +
-                    "reward=" + reward +
+                    "sequence=" + sequence +
+                    ", reward=" + reward +
+                    ", lastUpdateTime=" + lastUpdateTime +
+                    ", totalSupply=" + totalSupply +
+                    ", rewardPerTokenStored=" + rewardPerTokenStored +
+                    ", rewardRate=" + rewardRate +
+                    ", periodFinish=" + periodFinish +
+                    '}';
+        }
+    }
+
+
+    class OperationFeePaid implements Event {
+        private long sequence;
+        private Address user;
+        private Address treasury;
+        private BigInteger fee;
+        private BigInteger rewards;
+        private BigInteger rewardPerTokenStored;
+        private long lastUpdateTime;
+
+        public OperationFeePaid(long sequence, Address user, Address treasury, BigInteger fee, BigInteger rewards, BigInteger rewardPerTokenStored, long lastUpdateTime) {
+            this.sequence = sequence;
+            this.user = user;
+            this.treasury = treasury;
+            this.fee = fee;
+            this.rewards = rewards;
+            this.rewardPerTokenStored = rewardPerTokenStored;
+            this.lastUpdateTime = lastUpdateTime;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public void setSequence(long sequence) {
+            this.sequence = sequence;
+        }
+
+        public Address getUser() {
+            return user;
+        }
+
+        public void setUser(Address user) {
+            this.user = user;
+        }
+
+        public Address getTreasury() {
+            return treasury;
+        }
+
+        public void setTreasury(Address treasury) {
+            this.treasury = treasury;
+        }
+
+        public BigInteger getFee() {
+            return fee;
+        }
+
+        public void setFee(BigInteger fee) {
+            this.fee = fee;
+        }
+
+        public BigInteger getRewards() {
+            return rewards;
+        }
+
+        public void setRewards(BigInteger rewards) {
+            this.rewards = rewards;
+        }
+
+        public BigInteger getRewardPerTokenStored() {
+            return rewardPerTokenStored;
+        }
+
+        public void setRewardPerTokenStored(BigInteger rewardPerTokenStored) {
+            this.rewardPerTokenStored = rewardPerTokenStored;
+        }
+
+        public long getLastUpdateTime() {
+            return lastUpdateTime;
+        }
+
+        public void setLastUpdateTime(long lastUpdateTime) {
+            this.lastUpdateTime = lastUpdateTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            OperationFeePaid that = (OperationFeePaid) o;
+
+            if (sequence != that.sequence) return false;
+            if (user != null ? !user.equals(that.user) : that.user != null) return false;
+            if (treasury != null ? !treasury.equals(that.treasury) : that.treasury != null) return false;
+            if (fee != null ? !fee.equals(that.fee) : that.fee != null) return false;
+            if (rewards != null ? !rewards.equals(that.rewards) : that.rewards != null) return false;
+            if (rewardPerTokenStored != null ? !rewardPerTokenStored.equals(that.rewardPerTokenStored) : that.rewardPerTokenStored != null) return false;
+            return lastUpdateTime == that.lastUpdateTime;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (sequence ^ (sequence >>> 32));
+            result = 31 * result + (user != null ? user.hashCode() : 0);
+            result = 31 * result + (treasury != null ? treasury.hashCode() : 0);
+            result = 31 * result + (fee != null ? fee.hashCode() : 0);
+            result = 31 * result + (rewards != null ? rewards.hashCode() : 0);
+            result = 31 * result + (rewardPerTokenStored != null ? rewardPerTokenStored.hashCode() : 0);
+            result = 31 * result + (int) (lastUpdateTime ^ (lastUpdateTime >>> 32));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "OperationFeePaid{" +
+                    "sequence=" + sequence +
+                    ", user=" + user +
+                    ", treasury=" + treasury +
+                    ", fee=" + fee +
+                    ", rewards=" + rewards +
+                    ", rewardPerTokenStored=" + rewardPerTokenStored +
+                    ", lastUpdateTime=" + lastUpdateTime +
                     '}';
         }
+    }
+
+
+    class EpochLengthChanged implements Event {
+        private long sequence;
+        private long epochLength;
+        private BigInteger totalSupply;
+        private BigInteger rewardPerTokenStored;
+        private long lastUpdateTime;
+        private BigInteger rewardRate;
+        private long periodFinish;
+
+        public EpochLengthChanged(long sequence, long epochLength, BigInteger totalSupply, BigInteger rewardPerTokenStored, long lastUpdateTime, BigInteger rewardRate, long periodFinish) {
+            this.sequence = sequence;
+            this.epochLength = epochLength;
+            this.totalSupply = totalSupply;
+            this.rewardPerTokenStored = rewardPerTokenStored;
+            this.lastUpdateTime = lastUpdateTime;
+            this.rewardRate = rewardRate;
+            this.periodFinish = periodFinish;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public void setSequence(long sequence) {
+            this.sequence = sequence;
+        }
+
+        public long getEpochLength() {
+            return epochLength;
+        }
+
+        public void setEpochLength(long epochLength) {
+            this.epochLength = epochLength;
+        }
+
+        public BigInteger getTotalSupply() {
+            return totalSupply;
+        }
+
+        public void setTotalSupply(BigInteger totalSupply) {
+            this.totalSupply = totalSupply;
+        }
+
+        public BigInteger getRewardPerTokenStored() {
+            return rewardPerTokenStored;
+        }
+
+        public void setRewardPerTokenStored(BigInteger rewardPerTokenStored) {
+            this.rewardPerTokenStored = rewardPerTokenStored;
+        }
+
+        public long getLastUpdateTime() {
+            return lastUpdateTime;
+        }
+
+        public void setLastUpdateTime(long lastUpdateTime) {
+            this.lastUpdateTime = lastUpdateTime;
+        }
+
+        public BigInteger getRewardRate() {
+            return rewardRate;
+        }
+
+        public void setRewardRate(BigInteger rewardRate) {
+            this.rewardRate = rewardRate;
+        }
+
+        public long getPeriodFinish() {
+            return periodFinish;
+        }
+
+        public void setPeriodFinish(long periodFinish) {
+            this.periodFinish = periodFinish;
+        }
 
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
 
-            RewardAdded that = (RewardAdded) o;
+            EpochLengthChanged that = (EpochLengthChanged) o;
+
+            if (sequence != that.sequence) return false;
+            if (epochLength != that.epochLength) return false;
+            if (totalSupply != null ? !totalSupply.equals(that.totalSupply) : that.totalSupply != null) return false;
+            if (rewardPerTokenStored != null ? !rewardPerTokenStored.equals(that.rewardPerTokenStored) : that.rewardPerTokenStored != null) return false;
+            if (lastUpdateTime != that.lastUpdateTime) return false;
+            if (rewardRate != null ? !rewardRate.equals(that.rewardRate) : that.rewardRate != null) return false;
+            return periodFinish == that.periodFinish;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (sequence ^ (sequence >>> 32));
+            result = 31 * result + (int) (epochLength ^ (epochLength >>> 32));
+            result = 31 * result + (totalSupply != null ? totalSupply.hashCode() : 0);
+            result = 31 * result + (rewardPerTokenStored != null ? rewardPerTokenStored.hashCode() : 0);
+            result = 31 * result + (int) (lastUpdateTime ^ (lastUpdateTime >>> 32));
+            result = 31 * result + (rewardRate != null ? rewardRate.hashCode() : 0);
+            result = 31 * result + (int) (periodFinish ^ (periodFinish >>> 32));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "EpochLengthChanged{" +
+                    "sequence=" + sequence +
+                    ", epochLength=" + epochLength +
+                    ", totalSupply=" + totalSupply +
+                    ", rewardPerTokenStored=" + rewardPerTokenStored +
+                    ", lastUpdateTime=" + lastUpdateTime +
+                    ", rewardRate=" + rewardRate +
+                    ", periodFinish=" + periodFinish +
+                    '}';
+        }
+    }
+
+
+    class PendingSupplyActivated implements Event {
+        private long sequence;
+        private int activation;
+        private BigInteger rewardPerToken;
+        private long activationTime;
+        private BigInteger totalSupply;
+
+        public PendingSupplyActivated(long sequence, int activation, BigInteger rewardPerToken, long activationTime, BigInteger totalSupply) {
+            this.sequence = sequence;
+            this.activation = activation;
+            this.rewardPerToken = rewardPerToken;
+            this.activationTime = activationTime;
+            this.totalSupply = totalSupply;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public void setSequence(long sequence) {
+            this.sequence = sequence;
+        }
+
+        public int getActivation() {
+            return activation;
+        }
 
-            return reward != null ? reward.equals(that.reward) : that.reward == null;
+        public void setActivation(int activation) {
+            this.activation = activation;
+        }
+
+        public BigInteger getRewardPerToken() {
+            return rewardPerToken;
+        }
+
+        public void setRewardPerToken(BigInteger rewardPerToken) {
+            this.rewardPerToken = rewardPerToken;
+        }
+
+        public long getActivationTime() {
+            return activationTime;
+        }
+
+        public void setActivationTime(long activationTime) {
+            this.activationTime = activationTime;
+        }
+
+        public BigInteger getTotalSupply() {
+            return totalSupply;
+        }
+
+        public void setTotalSupply(BigInteger totalSupply) {
+            this.totalSupply = totalSupply;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            PendingSupplyActivated that = (PendingSupplyActivated) o;
+
+            if (sequence != that.sequence) return false;
+            if (activation != that.activation) return false;
+            if (rewardPerToken != null ? !rewardPerToken.equals(that.rewardPerToken) : that.rewardPerToken != null) return false;
+            if (activationTime != that.activationTime) return false;
+            return totalSupply != null ? totalSupply.equals(that.totalSupply) : that.totalSupply == null;
         }
 
         @Override
         public int hashCode() {
-            int result = reward != null ? reward.hashCode() : 0;
+            int result = (int) (sequence ^ (sequence >>> 32));
+            result = 31 * result + activation;
+            result = 31 * result + (rewardPerToken != null ? rewardPerToken.hashCode() : 0);
+            result = 31 * result + (int) (activationTime ^ (activationTime >>> 32));
+            result = 31 * result + (totalSupply != null ? totalSupply.hashCode() : 0);
             return result;
         }
+
+        @Override
+        public String toString() {
+            return "PendingSupplyActivated{" +
+                    "sequence=" + sequence +
+                    ", activation=" + activation +
+                    ", rewardPerToken=" + rewardPerToken +
+                    ", activationTime=" + activationTime +
+                    ", totalSupply=" + totalSupply +
+                    '}';
+        }
     }
 
 
@@ -0,0 +1,428 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @title   Off-chain Stake Account Table
+ *
+ * @dev     Compact store for the per-account state kept by {@link Stake}
+ *          (_balances, userRewardPerTokenPaid, rewards, allTimeRewards and
+ *          the stakes pending activation in epoch mode), meant for off-chain
+ *          mirrors of the contract such as {@link StakeMirror}. Addresses are interned to dense int ids
+ *          and the values of every account are packed in a single primitive
+ *          long array. Values that do not fit in a long are moved to a
+ *          BigInteger side-table, so the semantics are the same as the
+ *          contract while the common case costs 48 bytes per account plus
+ *          the address characters.
+ */
+public class AccountTable {
+
+    /// Constants
+    private static final BigInteger PRECISION = BigInteger.valueOf((long) 1e8);   // Same precision used in Stake
+    private static final long       OVERFLOW  = Long.MIN_VALUE;                   // Marks a value kept in the side-table
+    private static final BigInteger LONG_MIN  = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX  = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private static final int BALANCE    = 0;   // User ORA Tokens Deposited
+    private static final int PAID       = 1;   // User reward per token paid
+    private static final int REWARDS    = 2;   // Rewards Earned by User
+    private static final int ALL_TIME   = 3;   // All Time Rewards Earned by User
+    private static final int PENDING    = 4;   // User tokens waiting for the next epoch
+    private static final int ACTIVATION = 5;   // Activation where pending tokens become active
+    private static final int COLUMNS    = 6;
+
+    /// Variables
+    private int     size          = 0;                          // Number of interned accounts
+    private long[]  values;                                     // Account values, COLUMNS per account
+    private byte[]  addressBytes;                               // Interned address characters
+    private int[]   addressOffsets;                             // Start of each address in addressBytes
+    private int     addressBytesUsed = 0;                       // Used length of addressBytes
+    private int[]   slots;                                      // Open addressing table of id + 1, 0 when empty
+
+    private Map<Integer, BigInteger> overflow = new HashMap<Integer, BigInteger>(); // Values not representable as long
+
+    public AccountTable() {
+        this(1024);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param expectedAccounts Number of accounts to size the table for
+     */
+    public AccountTable(int expectedAccounts) {
+        int capacity = Math.max(16, expectedAccounts);
+        values          = new long[capacity * COLUMNS];
+        addressOffsets  = new int[capacity + 1];
+        addressBytes    = new byte[capacity * 40];
+        slots           = new int[tableSizeFor(capacity * 2)];
+    }
+
+    /*===========================================
+
+      ADDRESSES
+
+     ===========================================*/
+
+    /**
+     * Returns the number of accounts interned
+     *
+     * @return number of accounts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the id of an account, interning the address if it is new
+     *
+     * @param address User address
+     * @return account id
+     */
+    public int intern(String address) {
+        int hash = hash(address);
+        int mask = slots.length - 1;
+        int i = hash & mask;
+        while (slots[i] != 0) {
+            if (addressEquals(slots[i] - 1, address)) {
+                return slots[i] - 1;
+            }
+            i = (i + 1) & mask;
+        }
+
+        int id = append(address);
+        slots[i] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of an account
+     *
+     * @param address User address
+     * @return account id or -1 if the address was never interned
+     */
+    public int find(String address) {
+        int mask = slots.length - 1;
+        int i = hash(address) & mask;
+        while (slots[i] != 0) {
+            if (addressEquals(slots[i] - 1, address)) {
+                return slots[i] - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the address of an account
+     *
+     * @param id Account id
+     * @return user address
+     */
+    public String address(int id) {
+        checkId(id);
+        int start = addressOffsets[id];
+        char[] chars = new char[addressOffsets[id + 1] - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (addressBytes[start + i] & 0xff);
+        }
+        return new String(chars);
+    }
+
+    /*===========================================
+
+      VIEWS
+
+     ===========================================*/
+
+    /**
+     * Returns Nuls Oracle Tokens (ORA) balance
+     *
+     * @param id Account id
+     * @return user balance
+     */
+    public BigInteger balanceOf(int id) {
+        return get(id, BALANCE);
+    }
+
+    /**
+     * Returns user reward per token paid
+     *
+     * @param id Account id
+     * @return user reward per token paid
+     */
+    public BigInteger rewardPerTokenPaid(int id) {
+        return get(id, PAID);
+    }
+
+    /**
+     * Returns user rewards already allocated to user
+     *
+     * @param id Account id
+     * @return user stored rewards
+     */
+    public BigInteger storedRewards(int id) {
+        return get(id, REWARDS);
+    }
+
+    /**
+     * Returns user rewards already paid to user
+     *
+     * @param id Account id
+     * @return user paid rewards
+     */
+    public BigInteger paidRewards(int id) {
+        return get(id, ALL_TIME);
+    }
+
+    /**
+     * Returns user tokens pending activation
+     *
+     * @param id Account id
+     * @return user pending tokens
+     */
+    public BigInteger pendingBalance(int id) {
+        return get(id, PENDING);
+    }
+
+    /**
+     * Returns the activation where user pending tokens become active
+     *
+     * @param id Account id
+     * @return activation index
+     */
+    public int pendingActivation(int id) {
+        checkId(id);
+        return (int) values[id * COLUMNS + ACTIVATION];
+    }
+
+    /**
+     *  Get all the rewards earned by a user, all stored and all not stored,
+     *  same as Stake._earned
+     *
+     * @param id Account id
+     * @param rewardPerToken Current reward per token
+     *
+     * @return user earned rewards
+     */
+    public BigInteger earned(int id, BigInteger rewardPerToken) {
+        checkId(id);
+        int base = id * COLUMNS;
+        long balance = values[base + BALANCE];
+        long paid    = values[base + PAID];
+        long reward  = values[base + REWARDS];
+
+        if (balance != OVERFLOW && paid != OVERFLOW && reward != OVERFLOW && rewardPerToken.bitLength() < 63) {
+            try {
+                long delta = Math.subtractExact(rewardPerToken.longValue(), paid);
+                long accrued = Math.multiplyExact(balance, delta) / (long) 1e8;
+                return BigInteger.valueOf(Math.addExact(accrued, reward));
+            } catch (ArithmeticException e) {
+                // Falls back to BigInteger arithmetic below
+            }
+        }
+
+        return balanceOf(id).multiply(rewardPerToken.subtract(rewardPerTokenPaid(id))).
+                divide(PRECISION).add(storedRewards(id));
+    }
+
+    /**
+     *  Get all the rewards earned by a user including the rewards of
+     *  pending tokens that are already active, same as Stake._earned in epoch mode
+     *
+     * @param id Account id
+     * @param rewardPerToken Current reward per token
+     * @param activationRewardPerToken Reward per token when pending tokens became active, null if not active yet
+     *
+     * @return user earned rewards
+     */
+    public BigInteger earned(int id, BigInteger rewardPerToken, BigInteger activationRewardPerToken) {
+        BigInteger earned = earned(id, rewardPerToken);
+        if (activationRewardPerToken != null) {
+            earned = earned.add(pendingBalance(id).multiply(rewardPerToken.subtract(activationRewardPerToken)).
+                    divide(PRECISION));
+        }
+        return earned;
+    }
+
+    /**
+     *  Returns all time rewards, same as Stake.allTimeEarned
+     *
+     * @param id Account id
+     * @param rewardPerToken Current reward per token
+     * @return all time rewards
+     */
+    public BigInteger allTimeEarned(int id, BigInteger rewardPerToken) {
+        return paidRewards(id).add(earned(id, rewardPerToken));
+    }
+
+    /*===========================================
+
+      STATE MODIFIABLE FUNCTIONS
+
+     ===========================================*/
+
+    /**
+     * Stores rewards earned by user, same as the account part of Stake.updateReward
+     *
+     * @param id Account id
+     * @param rewardPerTokenStored Reward per token stored after the global update
+     */
+    public void updateReward(int id, BigInteger rewardPerTokenStored) {
+        set(id, REWARDS, earned(id, rewardPerTokenStored));
+        set(id, PAID, rewardPerTokenStored);
+    }
+
+    /**
+     * Stores rewards earned by user and activates pending tokens
+     * that already reached their epoch boundary
+     *
+     * @param id Account id
+     * @param rewardPerTokenStored Reward per token stored after the global update
+     * @param activationRewardPerToken Reward per token when pending tokens became active, null if not active yet
+     */
+    public void updateReward(int id, BigInteger rewardPerTokenStored, BigInteger activationRewardPerToken) {
+        set(id, REWARDS, earned(id, rewardPerTokenStored, activationRewardPerToken));
+        if (activationRewardPerToken != null) {
+            set(id, BALANCE, balanceOf(id).add(pendingBalance(id)));
+            set(id, PENDING, BigInteger.ZERO);
+        }
+        set(id, PAID, rewardPerTokenStored);
+    }
+
+    /**
+     * Adds an amount to the user tokens pending activation
+     *
+     * @param id Account id
+     * @param amount Amount staked
+     * @param activation Activation where the tokens become active
+     */
+    public void addPendingBalance(int id, BigInteger amount, int activation) {
+        set(id, PENDING, pendingBalance(id).add(amount));
+        values[id * COLUMNS + ACTIVATION] = activation;
+    }
+
+    /**
+     * Adds an amount to the user balance
+     *
+     * @param id Account id
+     * @param amount Amount staked
+     */
+    public void addBalance(int id, BigInteger amount) {
+        set(id, BALANCE, balanceOf(id).add(amount));
+    }
+
+    /**
+     * Moves the stored rewards of a user to its all time rewards
+     *
+     * @param id Account id
+     * @return rewards paid
+     */
+    public BigInteger payReward(int id) {
+        BigInteger reward = storedRewards(id);
+        set(id, REWARDS, BigInteger.ZERO);
+        set(id, ALL_TIME, paidRewards(id).add(reward));
+        return reward;
+    }
+
+    /*===========================================
+
+      PRIVATE FUNCTIONS
+
+     ===========================================*/
+
+    private BigInteger get(int id, int column) {
+        checkId(id);
+        int index = id * COLUMNS + column;
+        long value = values[index];
+        if (value == OVERFLOW) {
+            return overflow.get(index);
+        }
+        return BigInteger.valueOf(value);
+    }
+
+    private void set(int id, int column, BigInteger value) {
+        checkId(id);
+        int index = id * COLUMNS + column;
+        if (value.compareTo(LONG_MIN) > 0 && value.compareTo(LONG_MAX) <= 0) {
+            if (values[index] == OVERFLOW) {
+                overflow.remove(index);
+            }
+            values[index] = value.longValue();
+        } else {
+            values[index] = OVERFLOW;
+            overflow.put(index, value);
+        }
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown account id " + id);
+        }
+    }
+
+    private int append(String address) {
+        // Validate first so a rejected address leaves nothing behind
+        for (int i = 0; i < address.length(); i++) {
+            if (address.charAt(i) > 0xff) {
+                throw new IllegalArgumentException("Invalid Address");
+            }
+        }
+        if (size + 1 > addressOffsets.length - 1) {
+            int capacity = addressOffsets.length * 2;
+            addressOffsets = Arrays.copyOf(addressOffsets, capacity + 1);
+            values = Arrays.copyOf(values, capacity * COLUMNS);
+        }
+        if (addressBytesUsed + address.length() > addressBytes.length) {
+            addressBytes = Arrays.copyOf(addressBytes, Math.max(addressBytes.length * 2, addressBytesUsed + address.length()));
+        }
+        for (int i = 0; i < address.length(); i++) {
+            addressBytes[addressBytesUsed++] = (byte) address.charAt(i);
+        }
+        addressOffsets[size + 1] = addressBytesUsed;
+        return size++;
+    }
+
+    private boolean addressEquals(int id, String address) {
+        int start = addressOffsets[id];
+        if (addressOffsets[id + 1] - start != address.length()) {
+            return false;
+        }
+        for (int i = 0; i < address.length(); i++) {
+            if ((addressBytes[start + i] & 0xff) != address.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int i = hash(address(id)) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = id + 1;
+        }
+        slots = table;
+    }
+
+    private static int hash(String address) {
+        int h = address.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int n) {
+        int size = 1;
+        while (size < n) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,251 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @title   Stake Call Trace
+ *
+ * @dev     Ordered history of stake, getReward, notifyRewardAmount and
+ *          _payable calls made to {@link Stake}, used to replay real traffic
+ *          against the contract with {@link TraceReplay}.
+ *
+ *          Traces are stored as text, one call per line:
+ *
+ *              timestamp,method,sender,value,amount
+ *
+ *          where value is the Nuls sent with the call and amount is the call
+ *          argument (empty for getReward and _payable). Lines starting with
+ *          '#' are comments. Calls must be in non decreasing timestamp order.
+ */
+public class CallTrace {
+
+    /// Constants
+    public static final String STAKE        = "stake";
+    public static final String GET_REWARD   = "getReward";
+    public static final String NOTIFY       = "notifyRewardAmount";
+    public static final String PAYABLE      = "_payable";
+
+    private static final String HEADER = "# timestamp,method,sender,value,amount";
+
+    /// Variables
+    private final List<Call> calls = new ArrayList<Call>();
+
+    /*===========================================
+
+      VIEWS
+
+     ===========================================*/
+
+    /**
+     * Returns the recorded calls in order
+     *
+     * @return recorded calls
+     */
+    public List<Call> getCalls() {
+        return Collections.unmodifiableList(calls);
+    }
+
+    public int size() {
+        return calls.size();
+    }
+
+    /*===========================================
+
+      RECORDING
+
+     ===========================================*/
+
+    public void stake(long timestamp, String sender, BigInteger value, BigInteger amount) {
+        add(new Call(timestamp, STAKE, sender, value, amount));
+    }
+
+    public void getReward(long timestamp, String sender, BigInteger value) {
+        add(new Call(timestamp, GET_REWARD, sender, value, null));
+    }
+
+    public void notifyRewardAmount(long timestamp, String sender, BigInteger value, BigInteger reward) {
+        add(new Call(timestamp, NOTIFY, sender, value, reward));
+    }
+
+    public void _payable(long timestamp, String sender, BigInteger value) {
+        add(new Call(timestamp, PAYABLE, sender, value, null));
+    }
+
+    /**
+     * Appends a call to the trace
+     *
+     * @param call Call to append
+     */
+    public void add(Call call) {
+        if (!calls.isEmpty() && call.timestamp < calls.get(calls.size() - 1).timestamp) {
+            throw new IllegalArgumentException("Calls must be ordered by timestamp");
+        }
+        calls.add(call);
+    }
+
+    /*===========================================
+
+      SERIALIZATION
+
+     ===========================================*/
+
+    /**
+     * Writes the trace in text format
+     *
+     * @param out Destination writer
+     */
+    public void write(Writer out) throws IOException {
+        out.write(HEADER);
+        out.write('\n');
+        for (Call call : calls) {
+            out.write(call.format());
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a trace in text format
+     *
+     * @param in Source reader
+     * @return trace read
+     */
+    public static CallTrace read(Reader in) throws IOException {
+        CallTrace trace = new CallTrace();
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                trace.add(Call.parse(line));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid call at line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return trace;
+    }
+
+    /*===========================================
+
+      CLASSES
+
+     ===========================================*/
+
+    /**
+     * A single contract call
+     */
+    public static class Call {
+        private final long       timestamp;
+        private final String     method;
+        private final String     sender;
+        private final BigInteger value;
+        private final BigInteger amount;
+
+        public Call(long timestamp, String method, String sender, BigInteger value, BigInteger amount) {
+            if (!STAKE.equals(method) && !GET_REWARD.equals(method) && !NOTIFY.equals(method) && !PAYABLE.equals(method)) {
+                throw new IllegalArgumentException("Unknown method " + method);
+            }
+            if ((STAKE.equals(method) || NOTIFY.equals(method)) && amount == null) {
+                throw new IllegalArgumentException("Missing amount for " + method);
+            }
+            if (sender == null || sender.isEmpty() || sender.indexOf(',') >= 0) {
+                throw new IllegalArgumentException("Invalid Address");
+            }
+            this.timestamp  = timestamp;
+            this.method     = method;
+            this.sender     = sender;
+            this.value      = value == null ? BigInteger.ZERO : value;
+            this.amount     = amount;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getSender() {
+            return sender;
+        }
+
+        public BigInteger getValue() {
+            return value;
+        }
+
+        public BigInteger getAmount() {
+            return amount;
+        }
+
+        String format() {
+            return timestamp + "," + method + "," + sender + "," + value + "," + (amount != null ? amount : "");
+        }
+
+        static Call parse(String line) {
+            String[] fields = line.split(",", -1);
+            if (fields.length != 5) {
+                throw new IllegalArgumentException("Expected 5 fields but found " + fields.length);
+            }
+            try {
+                return new Call(Long.parseLong(fields[0].trim()),
+                        fields[1].trim(),
+                        fields[2].trim(),
+                        new BigInteger(fields[3].trim()),
+                        fields[4].trim().isEmpty() ? null : new BigInteger(fields[4].trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Call{" + format() + '}';
+        }
+    }
+
+    /**
+     * Streams calls to a writer as they happen, so live traffic can be
+     * recorded without keeping the whole trace in memory
+     */
+    public static class Recorder implements Closeable {
+        private final Writer out;
+        private long lastTimestamp = Long.MIN_VALUE;
+
+        public Recorder(Writer out) throws IOException {
+            this.out = out;
+            out.write(HEADER);
+            out.write('\n');
+        }
+
+        /**
+         * Records a call
+         *
+         * @param call Call to record
+         */
+        public synchronized void record(Call call) throws IOException {
+            if (call.timestamp < lastTimestamp) {
+                throw new IllegalArgumentException("Calls must be ordered by timestamp");
+            }
+            lastTimestamp = call.timestamp;
+            out.write(call.format());
+            out.write('\n');
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,439 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @title   JSON-RPC Stake Node
+ *
+ * @dev     {@link StakeNode} talking to the JSON-RPC interface of a NULS
+ *          API node through getBestBlockHeader, invokeView, contractCall,
+ *          getTx and getContractTxResult. Connections are kept alive and reused by the JDK, so
+ *          the number of open connections follows the pool size of the client.
+ *
+ *          invokeView always runs on the best block, so a view result is
+ *          only returned for the requested height when a best height read
+ *          sent after the view returned still gives that height. One such
+ *          read is shared by every view that returned before it was sent.
+ *          This relies on talking to a single node, whose height never
+ *          goes back.
+ */
+public class JsonRpcStakeNode implements StakeNode {
+
+    /// Constants
+    private static final long DEFAULT_GAS_LIMIT = 200_000;     // Gas limit of contract calls
+    private static final long DEFAULT_GAS_PRICE = 25;          // Gas price of contract calls
+
+    /// Variables
+    private final URL       url;                // JSON-RPC endpoint
+    private final int       chainId;            // Chain id
+    private final String    contractAddress;    // Stake contract address
+    private final String    password;           // Password of the sender accounts, null for views only
+    private final int       timeoutMillis;      // Connect and read timeout
+    private final AtomicLong nextId = new AtomicLong();
+
+    private final Object    heightLock = new Object();
+    private HeightRead      lastHeightRead;     // Latest best height read sent
+
+    /**
+     * Constructor
+     *
+     * @param url JSON-RPC endpoint of the NULS API node
+     * @param chainId Chain id
+     * @param contractAddress Stake contract address
+     * @param password Password of the sender accounts imported in the node, null for views only
+     * @param timeoutMillis Connect and read timeout in milliseconds
+     */
+    public JsonRpcStakeNode(URL url, int chainId, String contractAddress, String password, int timeoutMillis) {
+        this.url                = url;
+        this.chainId            = chainId;
+        this.contractAddress    = contractAddress;
+        this.password           = password;
+        this.timeoutMillis      = timeoutMillis;
+    }
+
+    @Override
+    public long latestHeight() throws IOException {
+        Object header = request("getBestBlockHeader", chainId);
+        return Long.parseLong(String.valueOf(field(header, "height")));
+    }
+
+    @Override
+    public String invokeView(long height, String method, String[][] args) throws IOException {
+        Object result = request("invokeView", chainId, contractAddress, method, "", toParams(args));
+        long latest = heightReadAfter(System.nanoTime());
+        if (latest > height) {
+            throw new StaleHeightException(height, latest);
+        }
+        if (latest < height) {
+            throw new IOException("Node is at height " + latest + ", behind requested height " + height);
+        }
+        return String.valueOf(field(result, "result"));
+    }
+
+    @Override
+    public String call(String sender, BigInteger value, String method, String[][] args) throws IOException {
+        if (password == null) {
+            throw new IOException("No password configured for contract calls");
+        }
+        Object result = request("contractCall", chainId, sender, password, value, DEFAULT_GAS_LIMIT,
+                DEFAULT_GAS_PRICE, contractAddress, method, "", toParams(args), "");
+        return String.valueOf(field(result, "txHash"));
+    }
+
+    @Override
+    public Confirmation confirmation(String txHash) throws IOException {
+        Object tx = request("getTx", chainId, txHash);
+        Object height = field(tx, "blockHeight");
+        Object status = field(tx, "status");
+        if (height == null || "0".equals(String.valueOf(status)) || Long.parseLong(String.valueOf(height)) < 0) {
+            return null;
+        }
+
+        // getTx keeps status 1 for contract calls that reverted, only the contract result tells
+        Object result = request("getContractTxResult", chainId, txHash);
+        boolean success = Boolean.TRUE.equals(field(result, "success"));
+        Object error = field(result, "errorMessage");
+        return new Confirmation(Long.parseLong(String.valueOf(height)), success,
+                success ? null : error == null ? "Unknown error" : String.valueOf(error));
+    }
+
+    /*===========================================
+
+      PRIVATE FUNCTIONS
+
+     ===========================================*/
+
+    /**
+     * Returns the best height from a read sent after the given time,
+     *  sharing the read with every caller it is recent enough for
+     *
+     * @param since System.nanoTime the read must be sent after
+     * @return best block height
+     */
+    private long heightReadAfter(long since) throws IOException {
+        HeightRead read;
+        boolean send = false;
+        synchronized (heightLock) {
+            read = lastHeightRead;
+            if (read == null || read.sentAt - since < 0 || read.failed()) {
+                read = new HeightRead(System.nanoTime());
+                lastHeightRead = read;
+                send = true;
+            }
+        }
+        if (send) {
+            try {
+                read.complete(latestHeight(), null);
+            } catch (IOException e) {
+                read.complete(-1, e);
+                throw e;
+            } catch (RuntimeException e) {
+                IOException error = new IOException("Invalid height response", e);
+                read.complete(-1, error);
+                throw error;
+            }
+        }
+        return read.await();
+    }
+
+    private Object request(String method, Object... params) throws IOException {
+        StringBuilder body = new StringBuilder();
+        body.append("{\"jsonrpc\":\"2.0\",\"id\":").append(nextId.incrementAndGet())
+                .append(",\"method\":");
+        writeJson(body, method);
+        body.append(",\"params\":");
+        List<Object> list = new ArrayList<Object>();
+        for (Object param : params) {
+            list.add(param);
+        }
+        writeJson(body, list);
+        body.append('}');
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json;charset=UTF-8");
+
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(bytes);
+        }
+
+        int status = connection.getResponseCode();
+        String response;
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            response = in == null ? "" : readAll(in);
+        }
+        if (status >= 400) {
+            throw new IOException("HTTP " + status + " from " + url + ": " + response);
+        }
+
+        Object json = new JsonParser(response).parse();
+        Object error = field(json, "error");
+        if (error != null) {
+            throw new IOException(method + " failed: " + error);
+        }
+        return field(json, "result");
+    }
+
+    private static List<Object> toParams(String[][] args) {
+        List<Object> params = new ArrayList<Object>();
+        if (args != null) {
+            for (String[] arg : args) {
+                if (arg.length == 1) {
+                    params.add(arg[0]);
+                } else {
+                    List<Object> values = new ArrayList<Object>();
+                    for (String value : arg) {
+                        values.add(value);
+                    }
+                    params.add(values);
+                }
+            }
+        }
+        return params;
+    }
+
+    private static Object field(Object json, String name) throws IOException {
+        if (json == null) {
+            return null;
+        }
+        if (!(json instanceof Map)) {
+            throw new IOException("Unexpected response " + json);
+        }
+        return ((Map<?, ?>) json).get(name);
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void writeJson(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof List) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : (List<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                writeJson(out, item);
+                first = false;
+            }
+            out.append(']');
+        } else {
+            String s = value.toString();
+            out.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    out.append('\\').append(c);
+                } else if (c < 0x20) {
+                    out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+    }
+
+    /**
+     * A best height read shared by the views it confirms
+     */
+    private static class HeightRead {
+        private final long              sentAt;                             // System.nanoTime before sending
+        private final CountDownLatch    done = new CountDownLatch(1);
+        private volatile long           height;
+        private volatile IOException    error;
+
+        HeightRead(long sentAt) {
+            this.sentAt = sentAt;
+        }
+
+        void complete(long height, IOException error) {
+            this.height = height;
+            this.error  = error;
+            done.countDown();
+        }
+
+        boolean failed() {
+            return done.getCount() == 0 && error != null;
+        }
+
+        long await() throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            if (error != null) {
+                throw new IOException("Height read failed", error);
+            }
+            return height;
+        }
+    }
+
+    /**
+     * Minimal JSON parser for node responses, numbers are kept as strings
+     * so amounts never lose precision
+     */
+    private static class JsonParser {
+        private final String s;
+        private int pos = 0;
+
+        JsonParser(String s) {
+            this.s = s;
+        }
+
+        Object parse() throws IOException {
+            Object value = value();
+            skipWhitespace();
+            if (pos != s.length()) {
+                throw error("Trailing characters");
+            }
+            return value;
+        }
+
+        private Object value() throws IOException {
+            skipWhitespace();
+            if (pos >= s.length()) {
+                throw error("Unexpected end");
+            }
+            char c = s.charAt(pos);
+            if (c == '{') {
+                pos++;
+                Map<String, Object> map = new LinkedHashMap<String, Object>();
+                skipWhitespace();
+                if (peek('}')) {
+                    return map;
+                }
+                do {
+                    skipWhitespace();
+                    String key = string();
+                    skipWhitespace();
+                    expect(':');
+                    map.put(key, value());
+                    skipWhitespace();
+                } while (peek(','));
+                expect('}');
+                return map;
+            } else if (c == '[') {
+                pos++;
+                List<Object> list = new ArrayList<Object>();
+                skipWhitespace();
+                if (peek(']')) {
+                    return list;
+                }
+                do {
+                    list.add(value());
+                    skipWhitespace();
+                } while (peek(','));
+                expect(']');
+                return list;
+            } else if (c == '"') {
+                return string();
+            } else if (s.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            } else if (s.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            } else if (s.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+            int start = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("Unexpected character " + c);
+            }
+            return s.substring(start, pos);
+        }
+
+        private String string() throws IOException {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (pos < s.length()) {
+                char c = s.charAt(pos++);
+                if (c == '"') {
+                    return out.toString();
+                }
+                if (c == '\\') {
+                    if (pos >= s.length()) {
+                        break;
+                    }
+                    char e = s.charAt(pos++);
+                    switch (e) {
+                        case 'n': out.append('\n'); break;
+                        case 't': out.append('\t'); break;
+                        case 'r': out.append('\r'); break;
+                        case 'b': out.append('\b'); break;
+                        case 'f': out.append('\f'); break;
+                        case 'u':
+                            if (pos + 4 > s.length()) {
+                                throw error("Invalid escape");
+                            }
+                            out.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                            pos += 4;
+                            break;
+                        default: out.append(e);
+                    }
+                } else {
+                    out.append(c);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private boolean peek(char c) {
+            if (pos < s.length() && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws IOException {
+            if (!peek(c)) {
+                throw error("Expected " + c);
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at " + pos + " in response");
+        }
+    }
+}
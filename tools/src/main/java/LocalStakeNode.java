@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @title   Local Stake Node
+ *
+ * @dev     Stand-in node running the real {@link Stake} contract through
+ *          {@link StakeHarness}, used to test {@link StakeClient} without a
+ *          running chain. Like a real node, calls only enter the mempool
+ *          and are applied when the next block is mined with
+ *          {@link #advance}, and views are answered for the latest block
+ *          only. An optional latency emulates the round trip to a real node
+ *          and failures can be injected.
+ */
+public class LocalStakeNode implements StakeNode {
+
+    /// Variables
+    private final StakeHarness harness;         // Contract state
+    private final long latencyMillis;           // Emulated round trip time
+    private long height;                        // Latest block height
+    private long timestamp;                     // Latest block timestamp
+    private long transactions = 0;              // Transactions received
+    private long requests = 0;                  // Requests served
+    private long viewRequests = 0;              // View requests served
+    private int  failures = 0;                  // Requests left to fail
+
+    private final List<Transaction>     mempool     = new ArrayList<Transaction>();     // Calls waiting for the next block
+    private final Map<String, Long>     confirmed   = new HashMap<String, Long>();      // Block height by transaction hash
+    private final Map<String, String>   reverted    = new HashMap<String, String>();    // Revert reason by transaction hash
+
+    /**
+     * Constructor
+     *
+     * @param harness Contract state to serve
+     * @param timestamp Timestamp of the first block
+     * @param latencyMillis Emulated round trip time in milliseconds
+     */
+    public LocalStakeNode(StakeHarness harness, long timestamp, long latencyMillis) {
+        this.harness        = harness;
+        this.timestamp      = timestamp;
+        this.latencyMillis  = latencyMillis;
+        this.height         = 1;
+    }
+
+    /**
+     * Mines a block with the calls in the mempool, in the order received
+     *
+     * @param seconds Seconds since the previous block
+     */
+    public synchronized void advance(long seconds) {
+        timestamp += seconds;
+        height++;
+        for (Transaction tx : mempool) {
+            try {
+                harness.invoke(tx.sender, tx.value, timestamp, tx.method, tx.args);
+            } catch (RuntimeException e) {
+                reverted.put(tx.hash, e.getMessage());
+            }
+            confirmed.put(tx.hash, height);
+        }
+        mempool.clear();
+    }
+
+    /**
+     * Makes the next requests fail with an IOException
+     *
+     * @param count Number of requests to fail
+     */
+    public synchronized void failNext(int count) {
+        failures = count;
+    }
+
+    /**
+     * Returns the number of calls waiting for the next block
+     *
+     * @return calls in the mempool
+     */
+    public synchronized int getMempoolSize() {
+        return mempool.size();
+    }
+
+    /**
+     * Returns the number of requests served
+     *
+     * @return requests served
+     */
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Returns the number of view requests served
+     *
+     * @return view requests served
+     */
+    public synchronized long getViewRequests() {
+        return viewRequests;
+    }
+
+    @Override
+    public long latestHeight() throws IOException {
+        roundTrip();
+        synchronized (this) {
+            serve();
+            return height;
+        }
+    }
+
+    @Override
+    public String invokeView(long height, String method, String[][] args) throws IOException {
+        roundTrip();
+        synchronized (this) {
+            serve();
+            viewRequests++;
+            if (height < this.height) {
+                throw new StaleHeightException(height, this.height);
+            }
+            if (height > this.height) {
+                throw new IOException("Unknown height " + height);
+            }
+            try {
+                return harness.view(timestamp, method, args(args));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            } catch (IllegalStateException e) {
+                throw new IOException("View reverted: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public String call(String sender, BigInteger value, String method, String[][] args) throws IOException {
+        roundTrip();
+        synchronized (this) {
+            serve();
+            Transaction tx = new Transaction("local-" + (++transactions), sender, value, method, args(args));
+            mempool.add(tx);
+            return tx.hash;
+        }
+    }
+
+    @Override
+    public Confirmation confirmation(String txHash) throws IOException {
+        roundTrip();
+        synchronized (this) {
+            serve();
+            Long confirmedAt = confirmed.get(txHash);
+            if (confirmedAt != null) {
+                String reason = reverted.get(txHash);
+                return new Confirmation(confirmedAt, reason == null, reason);
+            }
+            for (Transaction tx : mempool) {
+                if (tx.hash.equals(txHash)) {
+                    return null;
+                }
+            }
+            throw new IOException("Unknown transaction " + txHash);
+        }
+    }
+
+    private void serve() throws IOException {
+        requests++;
+        if (failures > 0) {
+            failures--;
+            throw new IOException("Injected failure");
+        }
+    }
+
+    private void roundTrip() throws IOException {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    private static String[] args(String[][] args) throws IOException {
+        String[] values = new String[args == null ? 0 : args.length];
+        for (int i = 0; i < values.length; i++) {
+            if (args[i] == null || args[i].length != 1) {
+                throw new IOException("Invalid argument " + i);
+            }
+            values[i] = args[i][0];
+        }
+        return values;
+    }
+
+    /**
+     * A call waiting in the mempool
+     */
+    private static class Transaction {
+        private final String        hash;
+        private final String        sender;
+        private final BigInteger    value;
+        private final String        method;
+        private final String[]      args;
+
+        Transaction(String hash, String sender, BigInteger value, String method, String[] args) {
+            this.hash   = hash;
+            this.sender = sender;
+            this.value  = value;
+            this.method = method;
+            this.args   = args;
+        }
+    }
+}
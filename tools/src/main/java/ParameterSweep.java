@@ -0,0 +1,538 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @title   Stake Parameter Sweep
+ *
+ * @dev     Runs many scenarios of the real {@link Stake} contract, through
+ *          {@link StakeHarness}, with synthetic staker populations for every
+ *          combination of distribution period, operation fee and minimum Nuls
+ *          transferable amount, using all cores. Combinations where the fee
+ *          is below the minimum amount are skipped, since setOperationFee
+ *          rejects them. Each scenario owns its
+ *          contract state and a random seed derived from the sweep seed and
+ *          the scenario index, so results do not depend on thread scheduling.
+ *          Calls within a simulated hour are spread over distinct seconds,
+ *          so per second reward accrual sees realistic gaps between writes.
+ *          DURATION and MIN_NULS_AMOUNT are static in Stake, so parameter
+ *          sets run one after another and their scenarios run in parallel.
+ *
+ *          For every parameter set it prints, averaged over its scenarios,
+ *          the contract work per call, fees collected, claims paid, dusted
+ *          out or skipped because the reward was below the fee, dust left
+ *          unclaimed and reward rate stability. Rate stability is the
+ *          coefficient of variation of the reward rate over the hours a
+ *          period is running, so idle hours between periods do not count.
+ *
+ *          Contract work is what {@link StakeHarness} counts while running
+ *          the real contract: map and list reads, state writes, external
+ *          calls and events, per call. These are operation counts, not gas.
+ *
+ *          Usage:
+ *
+ *              ParameterSweep [--durations s,s,...] [--fees n,n,...]
+ *                             [--min-amounts n,n,...] [--scenarios n]
+ *                             [--stakers n] [--days n] [--seed n] [--threads n]
+ *
+ *          Exits with status 2 on invalid options.
+ */
+public class ParameterSweep {
+
+    /// Constants
+    private static final String     USAGE           = "Usage: ParameterSweep [--durations s,s,...] [--fees n,n,...] "
+            + "[--min-amounts n,n,...] [--scenarios n] [--stakers n] [--days n] [--seed n] [--threads n]";
+    private static final long       HOUR            = 3600;
+    private static final long       START           = 1_600_000_000;                    // Timestamp of the first block
+    private static final BigInteger NULS            = BigInteger.valueOf(100_000_000);  // One Nuls or ORA token
+
+    /// Population
+    private final int       stakers;                // Stakers per scenario
+    private final int       days;                   // Simulated days per scenario
+    private final double    revenueProbability;     // Chance of a revenue deposit each hour
+    private final double    meanRevenue;            // Mean revenue deposit in Nuls
+    private final double    claimProbability;       // Chance of a staker claiming each hour
+    private final double    stormProbability;       // Chance of a staker claiming right after a deposit
+    private final double    rationalShare;          // Share of stakers that skip claims earning less than the fee
+
+    /**
+     * Constructor with the default population
+     *
+     * @param stakers Stakers per scenario
+     * @param days Simulated days per scenario
+     */
+    public ParameterSweep(int stakers, int days) {
+        this(stakers, days, 0.25, 200, 1.0 / 72, 0.2, 0.5);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param stakers Stakers per scenario
+     * @param days Simulated days per scenario
+     * @param revenueProbability Chance of a revenue deposit each hour
+     * @param meanRevenue Mean revenue deposit in Nuls
+     * @param claimProbability Chance of a staker claiming each hour
+     * @param stormProbability Chance of a staker claiming right after a deposit
+     * @param rationalShare Share of stakers that skip claims earning less than the fee
+     */
+    public ParameterSweep(int stakers, int days, double revenueProbability, double meanRevenue,
+                          double claimProbability, double stormProbability, double rationalShare) {
+        if (stakers <= 0 || days <= 0) {
+            throw new IllegalArgumentException("Invalid Population");
+        }
+        this.stakers            = stakers;
+        this.days               = days;
+        this.revenueProbability = revenueProbability;
+        this.meanRevenue        = meanRevenue;
+        this.claimProbability   = claimProbability;
+        this.stormProbability   = stormProbability;
+        this.rationalShare      = rationalShare;
+    }
+
+    /*===========================================
+
+      SWEEP
+
+     ===========================================*/
+
+    /**
+     * Runs every parameter set on the given number of scenarios
+     *
+     * @param parameters Parameter sets to evaluate
+     * @param scenarios Scenarios per parameter set
+     * @param seed Sweep seed
+     * @param threads Worker threads
+     * @return one aggregated result per parameter set, in the order given
+     */
+    public List<Result> run(List<Parameters> parameters, int scenarios, long seed, int threads)
+            throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long duration = StakeHarness.getDuration();
+        BigInteger minNulsAmount = StakeHarness.getMinNulsAmount();
+        try {
+            List<Result> results = new ArrayList<Result>();
+            for (int p = 0; p < parameters.size(); p++) {
+                final Parameters params = parameters.get(p);
+                StakeHarness.setConstants(params.duration, params.minNulsAmount);
+
+                List<Future<Result>> runs = new ArrayList<Future<Result>>();
+                for (int s = 0; s < scenarios; s++) {
+                    // Same seed for the same scenario index, so every parameter set sees the same populations
+                    final long scenarioSeed = new SplittableRandom(seed ^ (s * 0x9E3779B97F4A7C15L)).nextLong();
+                    runs.add(pool.submit(() -> runScenario(params, scenarioSeed)));
+                }
+
+                Result total = new Result(params);
+                for (Future<Result> run : runs) {
+                    total.add(run.get());
+                }
+                results.add(total);
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+            StakeHarness.setConstants(duration, minNulsAmount);
+        }
+    }
+
+    /**
+     * Runs one scenario, the contract constants must already be set
+     * to the parameter set with {@link StakeHarness#setConstants}
+     *
+     * @param params Contract parameters
+     * @param seed Scenario seed
+     * @return scenario result
+     */
+    public Result runScenario(Parameters params, long seed) {
+        Random random = new Random(seed);
+        StakeHarness harness = new StakeHarness(params.operationFee);
+        Result result = new Result(params);
+
+        // Stakers join during the first quarter of the scenario with log-normal stakes
+        long hours = days * 24L;
+        long[] joinHour = new long[stakers];
+        BigInteger[] stake = new BigInteger[stakers];
+        boolean[] rational = new boolean[stakers];
+        for (int i = 0; i < stakers; i++) {
+            joinHour[i] = (long) (random.nextDouble() * hours / 4);
+            stake[i] = BigInteger.valueOf((long) (Math.exp(random.nextGaussian() * 1.5) * 1000 * 1e8) + 1);
+            rational[i] = random.nextDouble() < rationalShare;
+        }
+
+        double rateSum = 0;
+        double rateSquares = 0;
+
+        for (long hour = 0; hour < hours; hour++) {
+            // Joins, then the deposit, then the claims it triggers, each at its own second of the hour
+            List<Integer> joins = new ArrayList<Integer>();
+            for (int i = 0; i < stakers; i++) {
+                if (joinHour[i] == hour) {
+                    joins.add(i);
+                }
+            }
+
+            BigInteger revenue = null;
+            boolean deposit = random.nextDouble() < revenueProbability;
+            if (deposit) {
+                revenue = BigInteger.valueOf((long) (-Math.log(1 - random.nextDouble()) * meanRevenue * 1e8));
+            }
+
+            List<Integer> claims = new ArrayList<Integer>();
+            for (int i = 0; i < stakers; i++) {
+                if (joinHour[i] <= hour && random.nextDouble() < (deposit ? stormProbability : claimProbability)) {
+                    claims.add(i);
+                }
+            }
+
+            long[] timestamps = spread(random, START + hour * HOUR, joins.size() + (deposit ? 1 : 0) + claims.size());
+            int next = 0;
+
+            for (int i : joins) {
+                invoke(harness, result, CallTrace.STAKE, "staker-" + i, stake[i], timestamps[next++]);
+            }
+
+            if (deposit) {
+                long timestamp = timestamps[next++];
+                if (timestamp < harness.getPeriodFinish()) {
+                    result.periodResets++;
+                }
+                invoke(harness, result, CallTrace.PAYABLE, StakeHarness.TREASURY, revenue, timestamp);
+            }
+
+            for (int i : claims) {
+                long timestamp = timestamps[next++];
+                if (rational[i] && harness.earned("staker-" + i, timestamp).compareTo(params.operationFee) <= 0) {
+                    result.skippedClaims++;
+                    continue;
+                }
+                invoke(harness, result, CallTrace.GET_REWARD, "staker-" + i, null, timestamp);
+            }
+
+            // Sampled at the end of the hour, so a period started by this hour's deposit counts
+            long timestamp = START + (hour + 1) * HOUR - 1;
+            double rate = timestamp < harness.getPeriodFinish() ? harness.getRewardRate().doubleValue() : 0;
+            if (rate > 0) {
+                rateSum += rate;
+                rateSquares += rate * rate;
+                result.activeHours++;
+            }
+        }
+
+        // Whatever is left below the minimum transferable amount can never be claimed
+        long end = START + hours * HOUR;
+        for (int i = 0; i < stakers; i++) {
+            BigInteger earned = harness.earned("staker-" + i, end);
+            result.unclaimed = result.unclaimed.add(earned);
+            if (earned.compareTo(params.minNulsAmount) < 0) {
+                result.dust = result.dust.add(earned);
+            }
+        }
+
+        // Over active hours only, idle hours would count as rate swings
+        long active = result.activeHours;
+        double mean = active == 0 ? 0 : rateSum / active;
+        double variance = active == 0 ? 0 : Math.max(0, rateSquares / active - mean * mean);
+        result.rateVariation = mean == 0 ? 0 : Math.sqrt(variance) / mean;
+        result.hours = hours;
+
+        result.mapReads         = harness.getMapReads();
+        result.stateWrites      = harness.getStateWrites();
+        result.externalCalls    = harness.getExternalCalls();
+        result.events           = harness.getEvents();
+        result.fees             = harness.getFeesCollected();
+        result.revenue          = harness.getRewardsNotified();
+        result.paid             = harness.getRewardsPaid();
+        result.scenarios        = 1;
+        return result;
+    }
+
+    /*===========================================
+
+      MAIN
+
+     ===========================================*/
+
+    public static void main(String[] args) throws Exception {
+        long[] durations    = {86400, 86400 * 2, 86400 * 7};
+        long[] fees         = {1_000_000, 5_000_000, 10_000_000};
+        long[] minAmounts   = {1_000_000, 10_000_000};
+        int scenarios       = 100;
+        int stakers         = 200;
+        int days            = 30;
+        long seed           = 1;
+        int threads         = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                usage("Missing value for option " + args[i]);
+            }
+            String value = args[i + 1];
+            try {
+                if ("--durations".equals(args[i])) {
+                    durations = parseList(value);
+                } else if ("--fees".equals(args[i])) {
+                    fees = parseList(value);
+                } else if ("--min-amounts".equals(args[i])) {
+                    minAmounts = parseList(value);
+                } else if ("--scenarios".equals(args[i])) {
+                    scenarios = Integer.parseInt(value);
+                } else if ("--stakers".equals(args[i])) {
+                    stakers = Integer.parseInt(value);
+                } else if ("--days".equals(args[i])) {
+                    days = Integer.parseInt(value);
+                } else if ("--seed".equals(args[i])) {
+                    seed = Long.parseLong(value);
+                } else if ("--threads".equals(args[i])) {
+                    threads = Integer.parseInt(value);
+                } else {
+                    usage("Unknown option " + args[i]);
+                }
+            } catch (NumberFormatException e) {
+                usage("Invalid value " + value + " for option " + args[i]);
+            }
+        }
+        if (scenarios <= 0 || stakers <= 0 || days <= 0 || threads <= 0) {
+            usage("Scenarios, stakers, days and threads must be positive");
+        }
+
+        List<Parameters> parameters = new ArrayList<Parameters>();
+        for (long duration : durations) {
+            for (long fee : fees) {
+                for (long minAmount : minAmounts) {
+                    if (fee < minAmount) {
+                        System.err.printf("Skipping fee %d below minimum amount %d%n", fee, minAmount);
+                        continue;
+                    }
+                    parameters.add(new Parameters(duration, BigInteger.valueOf(fee), BigInteger.valueOf(minAmount)));
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = new ParameterSweep(stakers, days).run(parameters, scenarios, seed, threads);
+
+        System.out.println(Result.HEADER);
+        for (Result result : results) {
+            System.out.println(result.toCsv());
+        }
+        System.err.printf("%d scenarios in %.1fs on %d threads%n",
+                parameters.size() * scenarios, (System.nanoTime() - start) / 1e9, threads);
+    }
+
+    /*===========================================
+
+      PRIVATE FUNCTIONS
+
+     ===========================================*/
+
+    /**
+     * Prints an error and the usage, and exits with status 2
+     */
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    private static void invoke(StakeHarness harness, Result result, String method, String sender,
+                               BigInteger amount, long timestamp) {
+        result.calls++;
+        try {
+            if (CallTrace.STAKE.equals(method)) {
+                harness.stake(sender, harness.getOperationFee(), amount, timestamp);
+            } else if (CallTrace.PAYABLE.equals(method)) {
+                harness._payable(sender, amount, timestamp);
+            } else {
+                result.claims++;
+                BigInteger before = harness.getRewardsPaid();
+                harness.getReward(sender, harness.getOperationFee(), timestamp);
+                if (harness.getRewardsPaid().equals(before)) {
+                    result.dustClaims++;
+                }
+            }
+        } catch (IllegalStateException e) {
+            result.reverted++;
+        }
+    }
+
+    /**
+     * Spreads calls over the seconds of an hour, each call at its own second
+     * while the hour has enough of them, in increasing order
+     *
+     * @param random Scenario random
+     * @param hourStart Timestamp of the first second of the hour
+     * @param calls Number of calls
+     * @return call timestamps
+     */
+    private static long[] spread(Random random, long hourStart, int calls) {
+        long[] timestamps = new long[calls];
+        if (calls > HOUR) {
+            // More calls than seconds, some have to share one
+            for (int i = 0; i < calls; i++) {
+                timestamps[i] = hourStart + i * HOUR / calls;
+            }
+            return timestamps;
+        }
+
+        // Floyd's sampling of distinct seconds
+        BitSet seconds = new BitSet((int) HOUR);
+        for (int j = (int) HOUR - calls; j < HOUR; j++) {
+            int second = random.nextInt(j + 1);
+            seconds.set(seconds.get(second) ? j : second);
+        }
+        int second = -1;
+        for (int i = 0; i < calls; i++) {
+            second = seconds.nextSetBit(second + 1);
+            timestamps[i] = hourStart + second;
+        }
+        return timestamps;
+    }
+
+    private static long[] parseList(String value) {
+        String[] parts = value.split(",");
+        long[] list = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            list[i] = Long.parseLong(parts[i].trim());
+        }
+        return list;
+    }
+
+    /*===========================================
+
+      CLASSES
+
+     ===========================================*/
+
+    /**
+     * A set of contract parameters
+     */
+    public static class Parameters {
+        private final long       duration;          // Rewards distribution period
+        private final BigInteger operationFee;      // Fee charged on stake and getReward
+        private final BigInteger minNulsAmount;     // Minimum Nuls transferable amount
+
+        public Parameters(long duration, BigInteger operationFee, BigInteger minNulsAmount) {
+            if (operationFee.compareTo(minNulsAmount) < 0) {
+                throw new IllegalArgumentException("Invalid Fee");
+            }
+            this.duration       = duration;
+            this.operationFee   = operationFee;
+            this.minNulsAmount  = minNulsAmount;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+
+        public BigInteger getOperationFee() {
+            return operationFee;
+        }
+
+        public BigInteger getMinNulsAmount() {
+            return minNulsAmount;
+        }
+
+        @Override
+        public String toString() {
+            return "Parameters{" +
+                    "duration=" + duration +
+                    ", operationFee=" + operationFee +
+                    ", minNulsAmount=" + minNulsAmount +
+                    '}';
+        }
+    }
+
+    /**
+     * Outcome of one or more scenarios of a parameter set, totals are
+     * summed over scenarios and reported as averages per scenario
+     */
+    public static class Result {
+        static final String HEADER = "duration,operationFee,minNulsAmount,scenarios,calls,reverted,"
+                + "mapReadsPerCall,stateWritesPerCall,externalCallsPerCall,eventsPerCall,feesCollected,revenue,paid,"
+                + "claims,paidClaims,dustClaims,skippedClaims,unclaimed,dustUnclaimed,periodResets,activeShare,rateVariation";
+
+        private final Parameters parameters;
+        private long        scenarios       = 0;
+        private long        calls           = 0;
+        private long        reverted        = 0;
+        private long        claims          = 0;
+        private long        dustClaims      = 0;
+        private long        skippedClaims   = 0;
+        private long        periodResets    = 0;
+        private long        hours           = 0;
+        private long        activeHours     = 0;
+        private long        mapReads        = 0;
+        private long        stateWrites     = 0;
+        private long        externalCalls   = 0;
+        private long        events          = 0;
+        private double      rateVariation   = 0;
+        private BigInteger  fees            = BigInteger.ZERO;
+        private BigInteger  revenue         = BigInteger.ZERO;
+        private BigInteger  paid            = BigInteger.ZERO;
+        private BigInteger  unclaimed       = BigInteger.ZERO;
+        private BigInteger  dust            = BigInteger.ZERO;
+
+        Result(Parameters parameters) {
+            this.parameters = parameters;
+        }
+
+        public Parameters getParameters() {
+            return parameters;
+        }
+
+        void add(Result other) {
+            scenarios       += other.scenarios;
+            calls           += other.calls;
+            reverted        += other.reverted;
+            claims          += other.claims;
+            dustClaims      += other.dustClaims;
+            skippedClaims   += other.skippedClaims;
+            periodResets    += other.periodResets;
+            hours           += other.hours;
+            activeHours     += other.activeHours;
+            mapReads        += other.mapReads;
+            stateWrites     += other.stateWrites;
+            externalCalls   += other.externalCalls;
+            events          += other.events;
+            rateVariation   += other.rateVariation;
+            fees            = fees.add(other.fees);
+            revenue         = revenue.add(other.revenue);
+            paid            = paid.add(other.paid);
+            unclaimed       = unclaimed.add(other.unclaimed);
+            dust            = dust.add(other.dust);
+        }
+
+        /**
+         * Returns the result as a CSV row, amounts in Nuls
+         *
+         * @return CSV row matching HEADER
+         */
+        public String toCsv() {
+            double n = Math.max(1, scenarios);
+            return String.format("%d,%s,%s,%d,%.1f,%.1f,%.2f,%.2f,%.2f,%.2f,%.4f,%.4f,%.4f,%.1f,%.1f,%.1f,%.1f,%.4f,%.6f,%.1f,%.3f,%.3f",
+                    parameters.duration, parameters.operationFee, parameters.minNulsAmount, scenarios,
+                    calls / n, reverted / n,
+                    perCall(mapReads), perCall(stateWrites), perCall(externalCalls), perCall(events),
+                    nuls(fees) / n, nuls(revenue) / n, nuls(paid) / n,
+                    claims / n, (claims - dustClaims) / n, dustClaims / n, skippedClaims / n,
+                    nuls(unclaimed) / n, nuls(dust) / n,
+                    periodResets / n, hours == 0 ? 0 : (double) activeHours / hours, rateVariation / n);
+        }
+
+        private double perCall(long total) {
+            return calls == 0 ? 0 : (double) total / calls;
+        }
+
+        private static double nuls(BigInteger amount) {
+            return amount.doubleValue() / NULS.doubleValue();
+        }
+    }
+}
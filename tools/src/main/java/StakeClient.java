@@ -0,0 +1,417 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @title   Stake Client
+ *
+ * @dev     Asynchronous client for the {@link Stake} contract. Requests are
+ *          pipelined over a bounded pool of {@link StakeNode} connections,
+ *          identical view requests in flight are coalesced into one and
+ *          view results are cached by block height, so many earned,
+ *          _balanceOf and allTimeEarned queries keep the link busy instead
+ *          of waiting on one round trip at a time.
+ *
+ *          Every view is pinned to a block height and the node must answer
+ *          it at that height. The latest height is refreshed at most once
+ *          per refresh interval, and moves forward as soon as the node
+ *          reports a newer one for a view or confirms a call sent through
+ *          the client. Cached results of older heights are dropped when a
+ *          new height is seen.
+ *
+ *          Calls complete once their transaction is confirmed, so views
+ *          requested afterwards see their effects. Calls that were
+ *          confirmed but reverted complete exceptionally with the reason.
+ */
+public class StakeClient implements Closeable {
+
+    /// Constants
+    private static final int STALE_RETRIES = 3;             // Views retried at a newer height before failing
+
+    /// Variables
+    private final StakeNode                 node;                   // Node transport
+    private final ExecutorService           pool;                   // Bounded pool running node requests
+    private final ScheduledExecutorService  poller;                 // Schedules confirmation polls
+    private final long                      heightRefreshNanos;     // Maximum age of the latest height
+    private final long                      pollMillis;             // Interval between confirmation polls
+
+    private final ConcurrentHashMap<ViewKey, CompletableFuture<String>> views = new ConcurrentHashMap<ViewKey, CompletableFuture<String>>(); // View results by height
+    private final ConcurrentHashMap<String, CompletableFuture<String>>  calls = new ConcurrentHashMap<String, CompletableFuture<String>>();  // Unconfirmed calls by transaction hash
+
+    private CompletableFuture<Long> height;                 // Latest height request
+    private long                    heightRequestedAt;      // When the latest height was requested
+    private volatile long           newestHeight = -1;      // Newest height seen
+
+    /**
+     * Constructor, confirmations are polled once per height refresh interval
+     *
+     * @param node Node transport
+     * @param poolSize Maximum number of requests in flight
+     * @param heightRefreshMillis Maximum age of the latest height in milliseconds
+     */
+    public StakeClient(StakeNode node, int poolSize, long heightRefreshMillis) {
+        this(node, poolSize, heightRefreshMillis, Math.max(1, heightRefreshMillis));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param node Node transport
+     * @param poolSize Maximum number of requests in flight
+     * @param heightRefreshMillis Maximum age of the latest height in milliseconds
+     * @param pollMillis Interval between confirmation polls of a call in milliseconds
+     */
+    public StakeClient(StakeNode node, int poolSize, long heightRefreshMillis, long pollMillis) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Invalid Pool Size");
+        }
+        if (pollMillis <= 0) {
+            throw new IllegalArgumentException("Invalid Poll Interval");
+        }
+        this.node               = node;
+        this.heightRefreshNanos = heightRefreshMillis * 1_000_000;
+        this.pollMillis         = pollMillis;
+        this.pool               = Executors.newFixedThreadPool(poolSize, daemonThreads("stake-client-"));
+        this.poller             = Executors.newSingleThreadScheduledExecutor(daemonThreads("stake-client-poller-"));
+    }
+
+    /*===========================================
+
+      VIEWS
+
+     ===========================================*/
+
+    /**
+     * Returns the latest block height, shared by all requests within the refresh interval
+     *
+     * @return latest block height
+     */
+    public synchronized CompletableFuture<Long> latestHeight() {
+        long now = System.nanoTime();
+        if (height != null && !height.isCompletedExceptionally()
+                && (!height.isDone() || now - heightRequestedAt < heightRefreshNanos)) {
+            return height;
+        }
+        heightRequestedAt = now;
+        height = submit(new NodeRequest<Long>() {
+            @Override
+            public Long send() throws IOException {
+                return node.latestHeight();
+            }
+        }).thenApply(h -> {
+            observe(h);
+            return h;
+        });
+        return height;
+    }
+
+    public CompletableFuture<BigInteger> earned(String account) {
+        return view("earned", account).thenApply(BigInteger::new);
+    }
+
+    public CompletableFuture<BigInteger> allTimeEarned(String account) {
+        return view("allTimeEarned", account).thenApply(BigInteger::new);
+    }
+
+    public CompletableFuture<BigInteger> _balanceOf(String account) {
+        return view("_balanceOf", account).thenApply(BigInteger::new);
+    }
+
+    public CompletableFuture<BigInteger> totalSupply() {
+        return view("totalSupply").thenApply(BigInteger::new);
+    }
+
+    public CompletableFuture<BigInteger> getRewardRate() {
+        return view("getRewardRate").thenApply(BigInteger::new);
+    }
+
+    public CompletableFuture<Long> getPeriodFinish() {
+        return view("getPeriodFinish").thenApply(Long::valueOf);
+    }
+
+    public CompletableFuture<BigInteger> getRewardPerTokenStored() {
+        return view("getRewardPerTokenStored").thenApply(BigInteger::new);
+    }
+
+    public CompletableFuture<BigInteger> getOperationFee() {
+        return view("getOperationFee").thenApply(BigInteger::new);
+    }
+
+    /**
+     * Returns earned Nuls of many accounts, all requests are sent at once
+     *
+     * @param accounts User addresses
+     * @return Nuls earned by each account, in the order given
+     */
+    public CompletableFuture<Map<String, BigInteger>> earned(Collection<String> accounts) {
+        final Map<String, CompletableFuture<BigInteger>> requests = new LinkedHashMap<String, CompletableFuture<BigInteger>>();
+        for (String account : accounts) {
+            requests.put(account, earned(account));
+        }
+        return CompletableFuture.allOf(requests.values().toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            Map<String, BigInteger> result = new LinkedHashMap<String, BigInteger>();
+            for (Map.Entry<String, CompletableFuture<BigInteger>> entry : requests.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().join());
+            }
+            return result;
+        });
+    }
+
+    /*===========================================
+
+      CALLS
+
+      Returned futures complete with the transaction
+      hash once the transaction is confirmed, or
+      with a CallRevertedException if it reverted
+
+     ===========================================*/
+
+    public CompletableFuture<String> stake(String sender, BigInteger value, BigInteger amount) {
+        return call(sender, value, "stake", new String[][]{new String[]{amount.toString()}});
+    }
+
+    public CompletableFuture<String> getReward(String sender, BigInteger value) {
+        return call(sender, value, "getReward", new String[][]{});
+    }
+
+    public CompletableFuture<String> notifyRewardAmount(String sender, BigInteger value, BigInteger reward) {
+        return call(sender, value, "notifyRewardAmount", new String[][]{new String[]{reward.toString()}});
+    }
+
+    /**
+     * Forces the next request to fetch the latest height
+     */
+    public synchronized void invalidate() {
+        height = null;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        poller.shutdownNow();
+        for (CompletableFuture<String> call : calls.values()) {
+            call.completeExceptionally(new IOException("Client closed before confirmation"));
+        }
+        calls.clear();
+    }
+
+    /**
+     * Returns the number of cached and in flight view results
+     *
+     * @return cached view results
+     */
+    int cachedViews() {
+        return views.size();
+    }
+
+    /*===========================================
+
+      PRIVATE FUNCTIONS
+
+     ===========================================*/
+
+    private CompletableFuture<String> view(final String method, final String... args) {
+        return latestHeight().thenCompose(h -> view(h, method, args, STALE_RETRIES));
+    }
+
+    /**
+     * Returns a view result at the given height, or at the newer height
+     *  the node reports when the given one is stale
+     */
+    private CompletableFuture<String> view(long h, final String method, final String[] args, final int retries) {
+        final ViewKey key = new ViewKey(Math.max(h, newestHeight), method, args);
+        CompletableFuture<String> result = views.get(key);
+        if (result == null) {
+            CompletableFuture<String> request = new CompletableFuture<String>();
+            result = views.putIfAbsent(key, request);
+            if (result == null) {
+                result = request;
+                send(key, request);
+            }
+        }
+        return result.handle((value, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(value);
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof StakeNode.StaleHeightException && retries > 0) {
+                long latest = ((StakeNode.StaleHeightException) cause).getLatestHeight();
+                observe(latest);
+                return view(latest, method, args, retries - 1);
+            }
+            CompletableFuture<String> failed = new CompletableFuture<String>();
+            failed.completeExceptionally(error);
+            return failed;
+        }).thenCompose(f -> f);
+    }
+
+    private void send(final ViewKey key, final CompletableFuture<String> request) {
+        final String[][] args = new String[key.args.length][];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = new String[]{key.args[i]};
+        }
+        submit(new NodeRequest<String>() {
+            @Override
+            public String send() throws IOException {
+                return node.invokeView(key.height, key.method, args);
+            }
+        }).whenComplete((value, error) -> {
+            if (error != null) {
+                // Failed requests are not cached
+                views.remove(key, request);
+                request.completeExceptionally(error);
+            } else {
+                request.complete(value);
+            }
+        });
+    }
+
+    private CompletableFuture<String> call(final String sender, final BigInteger value, final String method, final String[][] args) {
+        return submit(new NodeRequest<String>() {
+            @Override
+            public String send() throws IOException {
+                return node.call(sender, value, method, args);
+            }
+        }).thenCompose(hash -> {
+            CompletableFuture<String> confirmed = new CompletableFuture<String>();
+            calls.put(hash, confirmed);
+            schedulePoll(hash);
+            return confirmed;
+        });
+    }
+
+    private void schedulePoll(final String hash) {
+        try {
+            poller.schedule(() -> poll(hash), pollMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            fail(hash, e);
+        }
+    }
+
+    private void poll(final String hash) {
+        submit(new NodeRequest<StakeNode.Confirmation>() {
+            @Override
+            public StakeNode.Confirmation send() throws IOException {
+                return node.confirmation(hash);
+            }
+        }).whenComplete((confirmation, error) -> {
+            if (error != null) {
+                fail(hash, error);
+            } else if (confirmation == null) {
+                schedulePoll(hash);
+            } else if (!confirmation.isSuccess()) {
+                observe(confirmation.getHeight());
+                fail(hash, new StakeNode.CallRevertedException(hash, confirmation.getHeight(),
+                        confirmation.getErrorMessage()));
+            } else {
+                // Views sent from now on are pinned at or after the confirming block
+                observe(confirmation.getHeight());
+                CompletableFuture<String> confirmed = calls.remove(hash);
+                if (confirmed != null) {
+                    confirmed.complete(hash);
+                }
+            }
+        });
+    }
+
+    private void fail(String hash, Throwable error) {
+        CompletableFuture<String> confirmed = calls.remove(hash);
+        if (confirmed != null) {
+            confirmed.completeExceptionally(error);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(final NodeRequest<T> request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return request.send();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, pool);
+    }
+
+    /**
+     * Moves the latest height forward to a newer height seen on the node
+     *  and drops the view results of older heights
+     */
+    private synchronized void observe(long h) {
+        if (h > newestHeight) {
+            newestHeight = h;
+            views.keySet().removeIf(key -> key.height < h);
+            if (height == null || !height.isDone() || height.isCompletedExceptionally() || height.join() < h) {
+                height = CompletableFuture.completedFuture(h);
+                heightRequestedAt = System.nanoTime();
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * A blocking request to the node
+     */
+    private interface NodeRequest<T> {
+        T send() throws IOException;
+    }
+
+    /**
+     * Cache key of a view result
+     */
+    private static class ViewKey {
+        private final long      height;
+        private final String    method;
+        private final String[]  args;
+
+        ViewKey(long height, String method, String[] args) {
+            this.height = height;
+            this.method = method;
+            this.args   = args;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            ViewKey that = (ViewKey) o;
+
+            if (height != that.height) return false;
+            if (!method.equals(that.method)) return false;
+            return Arrays.equals(args, that.args);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (height ^ (height >>> 32));
+            result = 31 * result + method.hashCode();
+            result = 31 * result + Arrays.hashCode(args);
+            return result;
+        }
+    }
+}
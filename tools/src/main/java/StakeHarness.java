@@ -0,0 +1,754 @@
+import io.nuls.contract.sdk.Address;
+import io.nuls.contract.sdk.Event;
+import io.nuls.contract.sdk.VirtualMachine;
+import io.nuls.contract.sdk.annotation.View;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @title   Off-chain Stake Harness
+ *
+ * @dev     Runs the real {@link Stake} contract outside of the NULS VM, on the
+ *          io.nuls.contract.sdk stand-in of this module. Block timestamp,
+ *          sender and value are given by the caller, Nuls transfers are kept
+ *          by the {@link VirtualMachine} and a reverted call leaves no trace
+ *          in the contract state.
+ *
+ *          Every call counts what the contract actually did, as a proxy of
+ *          its gas cost on chain:
+ *
+ *              mapReads        get, containsKey and size on the contract maps and lists
+ *              stateWrites     fields, map entries and list elements changed by the call
+ *              externalCalls   Nuls transfers and token contract calls
+ *              events          events emitted, and their fields in eventFields
+ *
+ *          Reads and external calls of reverted calls are counted, writes
+ *          and events are not. Views run the same way but are never counted.
+ *
+ *          DURATION and MIN_NULS_AMOUNT are static in Stake, so
+ *          {@link #setConstants} changes them for every harness in the JVM.
+ */
+public class StakeHarness {
+
+    /// Constants
+    public static final String ADMIN    = "admin";      // Deployer and rewards distribution address
+    public static final String TOKEN    = "token";      // Staking token address
+    public static final String TREASURY = "treasury";   // Treasury address
+    public static final String CONTRACT = "stake";      // Contract address
+
+    private static final Field DURATION         = constant("DURATION");
+    private static final Field MIN_NULS_AMOUNT  = constant("MIN_NULS_AMOUNT");
+
+    /// Variables
+    private final VirtualMachine            vm;                 // Nuls balances and current call
+    private final Stake                     stake;              // Contract under test
+    private final List<Field>               fields = new ArrayList<Field>();                // Contract fields other than maps and lists
+    private final List<TrackedMap<?, ?>>    maps   = new ArrayList<TrackedMap<?, ?>>();     // Contract maps
+    private final List<TrackedList<?>>      lists  = new ArrayList<TrackedList<?>>();       // Contract lists
+
+    private long        height          = 0;                    // Block height of the last call
+    private long        timestamp       = 0;                    // Block timestamp of the last call
+    private List<Event> lastEvents      = Collections.emptyList();
+
+    /// Counters
+    private long        mapReads        = 0;                    // Map and list reads
+    private long        stateWrites     = 0;                    // Fields, map entries and list elements changed
+    private long        events          = 0;                    // Events emitted
+    private long        eventFields     = 0;                    // Fields of the events emitted
+    private BigInteger  rewardsNotified = BigInteger.ZERO;      // Revenue deposited for distribution
+    private BigInteger  rewardsPaid     = BigInteger.ZERO;      // Rewards transferred to users
+
+    /**
+     * Deploys the contract from {@link #ADMIN} at timestamp 0
+     *
+     * @param operationFee Fee charged on stake and getReward
+     */
+    public StakeHarness(final BigInteger operationFee) {
+        vm = new VirtualMachine(new Address(CONTRACT));
+        vm.begin(new Address(ADMIN), BigInteger.ZERO, 0, 0);
+        try {
+            stake = new Stake(new Address(TOKEN), new Address(TREASURY), operationFee);
+        } finally {
+            vm.commit();
+        }
+
+        try {
+            for (Field field : Stake.class.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                if (Map.class.isAssignableFrom(field.getType())) {
+                    TrackedMap<Object, Object> map = new TrackedMap<Object, Object>((Map<?, ?>) field.get(stake));
+                    field.set(stake, map);
+                    maps.add(map);
+                } else if (List.class.isAssignableFrom(field.getType())) {
+                    TrackedList<Object> list = new TrackedList<Object>((List<?>) field.get(stake));
+                    field.set(stake, list);
+                    lists.add(list);
+                } else {
+                    fields.add(field);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot instrument Stake", e);
+        }
+    }
+
+    /**
+     * Sets the contract constants for every harness in the JVM
+     *
+     * @param duration Rewards distribution period in seconds
+     * @param minNulsAmount Minimum Nuls transferable amount
+     */
+    public static synchronized void setConstants(long duration, BigInteger minNulsAmount) {
+        if (duration <= 0 || minNulsAmount == null || minNulsAmount.signum() < 0) {
+            throw new IllegalArgumentException("Invalid Constants");
+        }
+        try {
+            DURATION.setLong(null, duration);
+            MIN_NULS_AMOUNT.set(null, minNulsAmount);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot set Stake constants", e);
+        }
+    }
+
+    public static synchronized long getDuration() {
+        try {
+            return DURATION.getLong(null);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read Stake constants", e);
+        }
+    }
+
+    public static synchronized BigInteger getMinNulsAmount() {
+        try {
+            return (BigInteger) MIN_NULS_AMOUNT.get(null);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read Stake constants", e);
+        }
+    }
+
+    /*===========================================
+
+      CALLS
+
+     ===========================================*/
+
+    public void stake(String sender, BigInteger value, final BigInteger amount, long timestamp) {
+        execute(sender, value, timestamp, new ContractCall<Void>() {
+            @Override
+            public Void run() {
+                stake.stake(amount);
+                return null;
+            }
+        });
+    }
+
+    public BigInteger getReward(String sender, BigInteger value, long timestamp) {
+        BigInteger before = balanceOf(sender);
+        BigInteger reward = execute(sender, value, timestamp, new ContractCall<BigInteger>() {
+            @Override
+            public BigInteger run() {
+                return stake.getReward();
+            }
+        });
+        rewardsPaid = rewardsPaid.add(balanceOf(sender).subtract(before));
+        return reward;
+    }
+
+    public void notifyRewardAmount(String sender, BigInteger value, final BigInteger reward, long timestamp) {
+        execute(sender, value, timestamp, new ContractCall<Void>() {
+            @Override
+            public Void run() {
+                stake.notifyRewardAmount(reward);
+                return null;
+            }
+        });
+        rewardsNotified = rewardsNotified.add(reward);
+    }
+
+    public void _payable(String sender, BigInteger value, long timestamp) {
+        execute(sender, value, timestamp, new ContractCall<Void>() {
+            @Override
+            public Void run() {
+                stake._payable();
+                return null;
+            }
+        });
+        rewardsNotified = rewardsNotified.add(value);
+    }
+
+    public void setOperationFee(final BigInteger newFee, long timestamp) {
+        execute(ADMIN, BigInteger.ZERO, timestamp, new ContractCall<Void>() {
+            @Override
+            public Void run() {
+                stake.setOperationFee(newFee);
+                return null;
+            }
+        });
+    }
+
+    public void setEpochLength(final long newEpochLength, long timestamp) {
+        execute(ADMIN, BigInteger.ZERO, timestamp, new ContractCall<Void>() {
+            @Override
+            public Void run() {
+                stake.setEpochLength(newEpochLength);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Calls a state modifiable method by name, with arguments encoded as strings
+     *
+     * @param sender Caller address
+     * @param value Nuls sent with the call
+     * @param timestamp Block timestamp
+     * @param method Method name
+     * @param args Method arguments
+     * @return value returned by the method, null for void methods
+     */
+    public String invoke(String sender, BigInteger value, long timestamp, String method, String... args) {
+        final Method target = method(method, args);
+        final Object[] values = arguments(target, args);
+        if ("getReward".equals(method)) {
+            BigInteger before = balanceOf(sender);
+            String reward = invoke(sender, value, timestamp, target, values);
+            rewardsPaid = rewardsPaid.add(balanceOf(sender).subtract(before));
+            return reward;
+        }
+        String result = invoke(sender, value, timestamp, target, values);
+        if ("notifyRewardAmount".equals(method)) {
+            rewardsNotified = rewardsNotified.add((BigInteger) values[0]);
+        } else if ("_payable".equals(method)) {
+            rewardsNotified = rewardsNotified.add(value);
+        }
+        return result;
+    }
+
+    /*===========================================
+
+      VIEWS
+
+     ===========================================*/
+
+    /**
+     * Runs a view method by name at the given block timestamp, with arguments encoded as strings
+     *
+     * @param timestamp Block timestamp
+     * @param method Method name
+     * @param args Method arguments
+     * @return value returned by the method
+     */
+    public String view(long timestamp, String method, String... args) {
+        final Method target = method(method, args);
+        if (!target.isAnnotationPresent(View.class)) {
+            throw new IllegalArgumentException("Not a view method " + method);
+        }
+        final Object[] values = arguments(target, args);
+        return view(timestamp, new ContractCall<String>() {
+            @Override
+            public String run() {
+                return String.valueOf(call(target, values));
+            }
+        });
+    }
+
+    public BigInteger earned(final String account, long timestamp) {
+        return view(timestamp, new ContractCall<BigInteger>() {
+            @Override
+            public BigInteger run() {
+                return stake.earned(new Address(account));
+            }
+        });
+    }
+
+    public BigInteger allTimeEarned(final String account, long timestamp) {
+        return view(timestamp, new ContractCall<BigInteger>() {
+            @Override
+            public BigInteger run() {
+                return stake.allTimeEarned(new Address(account));
+            }
+        });
+    }
+
+    public BigInteger _balanceOf(final String account) {
+        return view(timestamp, new ContractCall<BigInteger>() {
+            @Override
+            public BigInteger run() {
+                return stake._balanceOf(new Address(account));
+            }
+        });
+    }
+
+    public BigInteger getPendingBalance(final String account, long timestamp) {
+        return view(timestamp, new ContractCall<BigInteger>() {
+            @Override
+            public BigInteger run() {
+                return stake.getPendingBalance(new Address(account));
+            }
+        });
+    }
+
+    public BigInteger totalSupply() {
+        return stake.totalSupply();
+    }
+
+    public BigInteger getPendingSupply() {
+        return stake.getPendingSupply();
+    }
+
+    public BigInteger getOperationFee() {
+        return stake.getOperationFee();
+    }
+
+    public BigInteger getRewardRate() {
+        return stake.getRewardRate();
+    }
+
+    public long getPeriodFinish() {
+        return stake.getPeriodFinish();
+    }
+
+    public long lastTimeRewardUpdated() {
+        return stake.lastTimeRewardUpdated();
+    }
+
+    public long getEpochLength() {
+        return stake.getEpochLength();
+    }
+
+    public long getEventSequence() {
+        return stake.getEventSequence();
+    }
+
+    /**
+     * Returns the Nuls balance of an address
+     *
+     * @param address Address
+     * @return Nuls balance
+     */
+    public BigInteger balanceOf(String address) {
+        return vm.balanceOf(new Address(address));
+    }
+
+    /**
+     * Returns the events emitted by the last call that did not revert
+     *
+     * @return events in emission order
+     */
+    public List<Event> getLastEvents() {
+        return lastEvents;
+    }
+
+    /**
+     * Returns the block height of the last call, one block per call
+     *
+     * @return block height
+     */
+    public long getHeight() {
+        return height;
+    }
+
+    public BigInteger getFeesCollected() {
+        return balanceOf(TREASURY);
+    }
+
+    public BigInteger getRewardsNotified() {
+        return rewardsNotified;
+    }
+
+    public BigInteger getRewardsPaid() {
+        return rewardsPaid;
+    }
+
+    public long getMapReads() {
+        return mapReads;
+    }
+
+    public long getStateWrites() {
+        return stateWrites;
+    }
+
+    public long getExternalCalls() {
+        return vm.getExternalCalls();
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getEventFields() {
+        return eventFields;
+    }
+
+    /*===========================================
+
+      PRIVATE FUNCTIONS
+
+     ===========================================*/
+
+    private String invoke(String sender, BigInteger value, long timestamp, final Method target, final Object[] values) {
+        Object result = execute(sender, value, timestamp, new ContractCall<Object>() {
+            @Override
+            public Object run() {
+                return call(target, values);
+            }
+        });
+        return result == null ? null : String.valueOf(result);
+    }
+
+    /**
+     * Runs a call, keeping its effects unless it reverts
+     */
+    private <T> T execute(String sender, BigInteger value, long timestamp, ContractCall<T> call) {
+        if (timestamp < this.timestamp) {
+            throw new IllegalArgumentException("Calls must be ordered by timestamp");
+        }
+        this.timestamp = timestamp;
+        this.height++;
+
+        long reads = reads();
+        Object[] before = snapshot();
+        vm.begin(new Address(sender), value, timestamp, height);
+        T result;
+        try {
+            result = call.run();
+        } catch (RuntimeException e) {
+            rollback(before);
+            vm.rollback();
+            mapReads += reads() - reads;
+            throw reverted(e);
+        }
+
+        stateWrites += commit(before);
+        lastEvents = vm.commit();
+        mapReads += reads() - reads;
+        events += lastEvents.size();
+        for (Event event : lastEvents) {
+            eventFields += fieldCount(event.getClass());
+        }
+        return result;
+    }
+
+    /**
+     * Runs a view, discarding anything it changed
+     */
+    private <T> T view(long timestamp, ContractCall<T> call) {
+        Object[] before = snapshot();
+        vm.begin(null, BigInteger.ZERO, timestamp, height);
+        try {
+            return call.run();
+        } catch (RuntimeException e) {
+            throw reverted(e);
+        } finally {
+            rollback(before);
+            vm.rollback();
+        }
+    }
+
+    private long reads() {
+        long reads = 0;
+        for (TrackedMap<?, ?> map : maps) {
+            reads += map.reads;
+        }
+        for (TrackedList<?> list : lists) {
+            reads += list.reads;
+        }
+        return reads;
+    }
+
+    private Object[] snapshot() {
+        Object[] values = new Object[fields.size()];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = fields.get(i).get(stake);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return values;
+    }
+
+    private long commit(Object[] before) {
+        long writes = 0;
+        try {
+            for (int i = 0; i < before.length; i++) {
+                if (!Objects.equals(before[i], fields.get(i).get(stake))) {
+                    writes++;
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        for (TrackedMap<?, ?> map : maps) {
+            writes += map.commit();
+        }
+        for (TrackedList<?> list : lists) {
+            writes += list.commit();
+        }
+        return writes;
+    }
+
+    private void rollback(Object[] before) {
+        try {
+            for (int i = 0; i < before.length; i++) {
+                fields.get(i).set(stake, before[i]);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        for (TrackedMap<?, ?> map : maps) {
+            map.rollback();
+        }
+        for (TrackedList<?> list : lists) {
+            list.rollback();
+        }
+    }
+
+    private Object call(Method target, Object[] values) {
+        try {
+            return target.invoke(stake, values);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Method method(String name, String[] args) {
+        for (Method method : Stake.class.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == args.length
+                    && method.getDeclaringClass() != Object.class) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("Unknown method " + name + " with " + args.length + " arguments");
+    }
+
+    private static Object[] arguments(Method method, String[] args) {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] values = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            if (types[i] == Address.class) {
+                values[i] = new Address(args[i]);
+            } else if (types[i] == BigInteger.class) {
+                values[i] = new BigInteger(args[i]);
+            } else if (types[i] == long.class) {
+                values[i] = Long.parseLong(args[i]);
+            } else if (types[i] == int.class) {
+                values[i] = Integer.parseInt(args[i]);
+            } else if (types[i] == boolean.class) {
+                values[i] = Boolean.parseBoolean(args[i]);
+            } else if (types[i] == String.class) {
+                values[i] = args[i];
+            } else {
+                throw new IllegalArgumentException("Unsupported argument type " + types[i].getName());
+            }
+        }
+        return values;
+    }
+
+    private static IllegalStateException reverted(RuntimeException e) {
+        if (e instanceof VirtualMachine.Revert) {
+            return new IllegalStateException(e.getMessage(), e);
+        }
+        return new IllegalStateException("Contract error: " + e, e);
+    }
+
+    private static final Map<Class<?>, Integer> FIELD_COUNTS = Collections.synchronizedMap(new HashMap<Class<?>, Integer>());
+
+    private static int fieldCount(Class<?> type) {
+        Integer count = FIELD_COUNTS.get(type);
+        if (count == null) {
+            count = 0;
+            for (Field field : type.getDeclaredFields()) {
+                if (!field.isSynthetic() && !Modifier.isStatic(field.getModifiers())) {
+                    count++;
+                }
+            }
+            FIELD_COUNTS.put(type, count);
+        }
+        return count;
+    }
+
+    private static Field constant(String name) {
+        try {
+            Field field = Stake.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /*===========================================
+
+      CLASSES
+
+     ===========================================*/
+
+    /**
+     * Code run inside a contract call
+     */
+    private interface ContractCall<T> {
+        T run();
+    }
+
+    /**
+     * Contract map that counts reads and remembers the entries a call changed
+     */
+    private static class TrackedMap<K, V> extends HashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+        private static final Object ABSENT = new Object();
+
+        private long reads = 0;
+        private final Map<Object, Object> original = new HashMap<Object, Object>();   // Entries before the current call
+
+        TrackedMap(Map<? extends K, ? extends V> values) {
+            super(values);
+        }
+
+        @Override
+        public V get(Object key) {
+            reads++;
+            return super.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            reads++;
+            return super.containsKey(key);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            remember(key);
+            return super.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            remember(key);
+            return super.remove(key);
+        }
+
+        private void remember(Object key) {
+            if (!original.containsKey(key)) {
+                original.put(key, super.containsKey(key) ? super.get(key) : ABSENT);
+            }
+        }
+
+        long commit() {
+            long writes = 0;
+            for (Map.Entry<Object, Object> entry : original.entrySet()) {
+                Object now = super.containsKey(entry.getKey()) ? super.get(entry.getKey()) : ABSENT;
+                if (!Objects.equals(now, entry.getValue())) {
+                    writes++;
+                }
+            }
+            original.clear();
+            return writes;
+        }
+
+        @SuppressWarnings("unchecked")
+        void rollback() {
+            for (Map.Entry<Object, Object> entry : original.entrySet()) {
+                if (entry.getValue() == ABSENT) {
+                    super.remove(entry.getKey());
+                } else {
+                    super.put((K) entry.getKey(), (V) entry.getValue());
+                }
+            }
+            original.clear();
+        }
+    }
+
+    /**
+     * Contract list that counts reads and remembers the elements a call changed
+     */
+    private static class TrackedList<E> extends ArrayList<E> {
+        private static final long serialVersionUID = 1L;
+
+        private long reads = 0;
+        private int originalSize = -1;                                                      // Size before the current call, -1 if unchanged
+        private final Map<Integer, E> original = new HashMap<Integer, E>();                 // Elements replaced by the current call
+
+        TrackedList(List<? extends E> values) {
+            super(values);
+        }
+
+        @Override
+        public E get(int index) {
+            reads++;
+            return super.get(index);
+        }
+
+        @Override
+        public int size() {
+            reads++;
+            return super.size();
+        }
+
+        @Override
+        public boolean add(E element) {
+            remember();
+            return super.add(element);
+        }
+
+        @Override
+        public E set(int index, E element) {
+            remember();
+            if (index < originalSize && !original.containsKey(index)) {
+                original.put(index, super.get(index));
+            }
+            return super.set(index, element);
+        }
+
+        private void remember() {
+            if (originalSize < 0) {
+                originalSize = super.size();
+            }
+        }
+
+        long commit() {
+            long writes = 0;
+            if (originalSize >= 0) {
+                writes += Math.max(0, super.size() - originalSize);
+                for (Map.Entry<Integer, E> entry : original.entrySet()) {
+                    if (!Objects.equals(super.get(entry.getKey()), entry.getValue())) {
+                        writes++;
+                    }
+                }
+            }
+            originalSize = -1;
+            original.clear();
+            return writes;
+        }
+
+        void rollback() {
+            if (originalSize >= 0) {
+                removeRange(originalSize, super.size());
+                for (Map.Entry<Integer, E> entry : original.entrySet()) {
+                    super.set(entry.getKey(), entry.getValue());
+                }
+            }
+            originalSize = -1;
+            original.clear();
+        }
+    }
+}
@@ -0,0 +1,379 @@
+import io.nuls.contract.sdk.Event;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @title   Off-chain Stake Mirror
+ *
+ * @dev     Keeps the state of a {@link Stake} contract from its event stream
+ *          alone, with the per-account state in an {@link AccountTable}, and
+ *          answers earned, allTimeEarned, _balanceOf, getPendingBalance,
+ *          totalSupply and getPendingSupply the same way the contract does.
+ *
+ *          Events are applied per call together with the timestamp of the
+ *          block that included it. Sequence numbers must follow each other
+ *          and every event is checked against the state it reports, so a
+ *          missing event or a divergence from the contract is detected at
+ *          the first event that disagrees.
+ */
+public class StakeMirror {
+
+    /// Constants
+    private static final BigInteger PRECISION = BigInteger.valueOf((long) 1e8);   // Same precision used in Stake
+
+    /// Variables
+    private final AccountTable accounts;                                // Per-account state
+    private long        sequence              = 0;                      // Sequence number of the last event applied
+    private long        lastUpdateTime        = 0;                      // Last time when rewards were updated
+    private long        periodFinish          = 0;                      // When the stake rewards will end
+    private long        epochLength           = 0;                      // Epoch length in seconds, 0 accrues rewards per second
+    private long        pendingSupplyEpoch    = 0;                      // Epoch when the pending supply was staked
+    private BigInteger  rewardPerTokenStored  = BigInteger.ZERO;        // Current Reward Per Token Stored
+    private BigInteger  rewardRate            = BigInteger.ONE;         // Current Distribution Reward Rate
+    private BigInteger  activeSupply          = BigInteger.ZERO;        // Supply earning rewards
+    private BigInteger  pendingSupply         = BigInteger.ZERO;        // Supply waiting for the next epoch
+
+    private final List<BigInteger> epochRewardPerToken = new ArrayList<BigInteger>(); // Reward per token of each activation
+
+    public StakeMirror() {
+        this(new AccountTable());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param accounts Table holding the per-account state, must be empty
+     */
+    public StakeMirror(AccountTable accounts) {
+        if (accounts.size() != 0) {
+            throw new IllegalArgumentException("Account Table Not Empty");
+        }
+        this.accounts = accounts;
+    }
+
+    /*===========================================
+
+      EVENTS
+
+     ===========================================*/
+
+    /**
+     * Applies the events emitted by one call
+     *
+     * @param timestamp Timestamp of the block that included the call
+     * @param events Events in emission order
+     */
+    public void apply(long timestamp, List<Event> events) {
+        for (Event event : events) {
+            apply(timestamp, event);
+        }
+    }
+
+    /**
+     * Applies one event
+     *
+     * @param timestamp Timestamp of the block that included the call
+     * @param event Event emitted by the contract
+     */
+    public void apply(long timestamp, Event event) {
+        if (event instanceof Stake.PendingSupplyActivated) {
+            activated((Stake.PendingSupplyActivated) event);
+        } else if (event instanceof Stake.OperationFeePaid) {
+            feePaid((Stake.OperationFeePaid) event);
+        } else if (event instanceof Stake.Staked) {
+            staked(timestamp, (Stake.Staked) event);
+        } else if (event instanceof Stake.RewardPaid) {
+            rewardPaid((Stake.RewardPaid) event);
+        } else if (event instanceof Stake.RewardAdded) {
+            rewardAdded((Stake.RewardAdded) event);
+        } else if (event instanceof Stake.EpochLengthChanged) {
+            epochLengthChanged((Stake.EpochLengthChanged) event);
+        } else {
+            throw new IllegalArgumentException("Unknown event " + event);
+        }
+    }
+
+    /*===========================================
+
+      VIEWS
+
+     ===========================================*/
+
+    /**
+     * Returns the sequence number of the last event applied
+     *
+     * @return last event sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the table holding the per-account state
+     *
+     * @return account table
+     */
+    public AccountTable getAccounts() {
+        return accounts;
+    }
+
+    /**
+     *  Returns earned Nuls, same as Stake.earned
+     *
+     * @param account User address
+     * @param timestamp Block timestamp
+     * @return Nuls earned in revenue distribution
+     */
+    public BigInteger earned(String account, long timestamp) {
+        int id = accounts.find(account);
+        if (id < 0) {
+            return BigInteger.ZERO;
+        }
+        return accounts.earned(id, rewardPerToken(timestamp), pendingStakeActivation(id, timestamp));
+    }
+
+    /**
+     *  Returns all time rewards in Nuls, same as Stake.allTimeEarned
+     *
+     * @param account User address
+     * @param timestamp Block timestamp
+     * @return all time rewards in Nuls
+     */
+    public BigInteger allTimeEarned(String account, long timestamp) {
+        int id = accounts.find(account);
+        if (id < 0) {
+            return BigInteger.ZERO;
+        }
+        return accounts.paidRewards(id).add(earned(account, timestamp));
+    }
+
+    /**
+     * Returns Nuls Oracle Tokens (ORA) balance including tokens pending activation, same as Stake._balanceOf
+     *
+     * @param account User address
+     * @return user balance
+     */
+    public BigInteger balanceOf(String account) {
+        int id = accounts.find(account);
+        if (id < 0) {
+            return BigInteger.ZERO;
+        }
+        return accounts.balanceOf(id).add(accounts.pendingBalance(id));
+    }
+
+    /**
+     * Returns user tokens still waiting for the next epoch, same as Stake.getPendingBalance
+     *
+     * @param account User address
+     * @param timestamp Block timestamp
+     * @return user tokens pending activation
+     */
+    public BigInteger getPendingBalance(String account, long timestamp) {
+        int id = accounts.find(account);
+        if (id < 0 || pendingStakeActivation(id, timestamp) != null) {
+            return BigInteger.ZERO;
+        }
+        return accounts.pendingBalance(id);
+    }
+
+    /**
+     * Returns all the Nuls Oracle Tokens (ORA) deposited, same as Stake.totalSupply
+     *
+     * @return all tokens deposited
+     */
+    public BigInteger totalSupply() {
+        return activeSupply.add(pendingSupply);
+    }
+
+    /**
+     * Returns tokens deposited in the current epoch, same as Stake.getPendingSupply
+     *
+     * @return tokens pending activation
+     */
+    public BigInteger getPendingSupply() {
+        return pendingSupply;
+    }
+
+    /**
+     * Returns all rewards per token deposited at a block timestamp
+     *
+     * @param timestamp Block timestamp
+     * @return rewards per token deposited
+     */
+    public BigInteger rewardPerToken(long timestamp) {
+        if (epochLength > 0) {
+            if (pendingActivationDue(timestamp)) {
+                return accrue(rewardPerTokenAtActivation(), activationTime(), lastTimeRewardApplicable(timestamp),
+                        activeSupply.add(pendingSupply));
+            }
+            return accrue(rewardPerTokenStored, lastUpdateTime, lastTimeRewardApplicable(timestamp), activeSupply);
+        }
+        if (activeSupply.equals(BigInteger.ZERO)) {
+            return rewardPerTokenStored;
+        }
+        return rewardPerTokenStored.
+                add(BigInteger.valueOf(lastTimeRewardApplicable(timestamp)).
+                        subtract(BigInteger.valueOf(lastUpdateTime)).
+                        multiply(rewardRate).
+                        multiply(PRECISION).
+                        divide(activeSupply));
+    }
+
+    /*===========================================
+
+      PRIVATE FUNCTIONS
+
+     ===========================================*/
+
+    private void activated(Stake.PendingSupplyActivated event) {
+        next(event.getSequence());
+        check(event.getActivation() == epochRewardPerToken.size(), event, "activation");
+        epochRewardPerToken.add(event.getRewardPerToken());
+        rewardPerTokenStored    = event.getRewardPerToken();
+        lastUpdateTime          = event.getActivationTime();
+        activeSupply            = activeSupply.add(pendingSupply);
+        pendingSupply           = BigInteger.ZERO;
+        check(activeSupply.equals(event.getTotalSupply()), event, "totalSupply");
+    }
+
+    private void feePaid(Stake.OperationFeePaid event) {
+        next(event.getSequence());
+        rewardPerTokenStored    = event.getRewardPerTokenStored();
+        lastUpdateTime          = event.getLastUpdateTime();
+
+        // The account part of Stake.updateReward, which ran before the fee was paid
+        int id = accounts.intern(event.getUser().toString());
+        BigInteger activation = null;
+        if (accounts.pendingBalance(id).signum() > 0 && accounts.pendingActivation(id) < epochRewardPerToken.size()) {
+            activation = epochRewardPerToken.get(accounts.pendingActivation(id));
+        }
+        accounts.updateReward(id, rewardPerTokenStored, activation);
+        check(accounts.storedRewards(id).equals(event.getRewards()), event, "rewards");
+    }
+
+    private void staked(long timestamp, Stake.Staked event) {
+        next(event.getSequence());
+        int id = accounts.intern(event.getUser().toString());
+        if (epochLength > 0) {
+            accounts.addPendingBalance(id, event.getAmount(), event.getActivation());
+            pendingSupply = pendingSupply.add(event.getAmount());
+            pendingSupplyEpoch = timestamp / epochLength;
+        } else {
+            accounts.addBalance(id, event.getAmount());
+            activeSupply = activeSupply.add(event.getAmount());
+        }
+        rewardRate      = event.getRewardRate();
+        periodFinish    = event.getPeriodFinish();
+
+        check(rewardPerTokenStored.equals(event.getRewardPerTokenStored()), event, "rewardPerTokenStored");
+        check(accounts.pendingBalance(id).signum() > 0
+                ? accounts.pendingActivation(id) == event.getActivation() : event.getActivation() == -1, event, "activation");
+        checkAccount(id, event.getBalance(), event.getPendingBalance(), event);
+        checkSupply(event.getTotalSupply(), event.getPendingSupply(), event);
+    }
+
+    private void rewardPaid(Stake.RewardPaid event) {
+        next(event.getSequence());
+        int id = accounts.intern(event.getUser().toString());
+        check(accounts.payReward(id).equals(event.getAmount()), event, "amount");
+        rewardRate      = event.getRewardRate();
+        periodFinish    = event.getPeriodFinish();
+
+        check(rewardPerTokenStored.equals(event.getRewardPerTokenStored()), event, "rewardPerTokenStored");
+        checkAccount(id, event.getBalance(), event.getPendingBalance(), event);
+        checkSupply(event.getTotalSupply(), event.getPendingSupply(), event);
+    }
+
+    private void rewardAdded(Stake.RewardAdded event) {
+        next(event.getSequence());
+        rewardPerTokenStored    = event.getRewardPerTokenStored();
+        lastUpdateTime          = event.getLastUpdateTime();
+        rewardRate              = event.getRewardRate();
+        periodFinish            = event.getPeriodFinish();
+        check(totalSupply().equals(event.getTotalSupply()), event, "totalSupply");
+    }
+
+    private void epochLengthChanged(Stake.EpochLengthChanged event) {
+        next(event.getSequence());
+        epochLength             = event.getEpochLength();
+        rewardPerTokenStored    = event.getRewardPerTokenStored();
+        lastUpdateTime          = event.getLastUpdateTime();
+        rewardRate              = event.getRewardRate();
+        periodFinish            = event.getPeriodFinish();
+        check(pendingSupply.signum() == 0, event, "pendingSupply");
+        check(totalSupply().equals(event.getTotalSupply()), event, "totalSupply");
+    }
+
+    /**
+     * Returns reward per token when user pending tokens became active
+     *
+     * @return reward per token at activation, null if there are no active pending tokens
+     */
+    private BigInteger pendingStakeActivation(int id, long timestamp) {
+        if (accounts.pendingBalance(id).signum() == 0) {
+            return null;
+        }
+        int activation = accounts.pendingActivation(id);
+        if (activation < epochRewardPerToken.size()) {
+            return epochRewardPerToken.get(activation);
+        }
+        if (pendingActivationDue(timestamp)) {
+            return rewardPerTokenAtActivation();
+        }
+        return null;
+    }
+
+    private boolean pendingActivationDue(long timestamp) {
+        return epochLength > 0 && pendingSupply.signum() > 0 && pendingSupplyEpoch < timestamp / epochLength;
+    }
+
+    private long activationTime() {
+        long boundary = (pendingSupplyEpoch + 1) * epochLength;
+        return Math.max(lastUpdateTime, boundary < periodFinish ? boundary : periodFinish);
+    }
+
+    private BigInteger rewardPerTokenAtActivation() {
+        return accrue(rewardPerTokenStored, lastUpdateTime, activationTime(), activeSupply);
+    }
+
+    private long lastTimeRewardApplicable(long timestamp) {
+        long time = epochLength > 0 ? timestamp / epochLength * epochLength : timestamp;
+        return time < periodFinish ? time : periodFinish;
+    }
+
+    private BigInteger accrue(BigInteger rewardPerToken, long from, long to, BigInteger supply) {
+        if (to <= from || supply.equals(BigInteger.ZERO)) {
+            return rewardPerToken;
+        }
+        return rewardPerToken.
+                add(BigInteger.valueOf(to - from).
+                        multiply(rewardRate).
+                        multiply(PRECISION).
+                        divide(supply));
+    }
+
+    private void next(long eventSequence) {
+        if (eventSequence != sequence + 1) {
+            throw new IllegalStateException("Expected event " + (sequence + 1) + " but got " + eventSequence);
+        }
+        sequence = eventSequence;
+    }
+
+    private void checkAccount(int id, BigInteger balance, BigInteger pendingBalance, Event event) {
+        check(accounts.balanceOf(id).add(accounts.pendingBalance(id)).equals(balance), event, "balance");
+        check(accounts.pendingBalance(id).equals(pendingBalance), event, "pendingBalance");
+    }
+
+    private void checkSupply(BigInteger totalSupply, BigInteger pendingSupply, Event event) {
+        check(totalSupply().equals(totalSupply), event, "totalSupply");
+        check(this.pendingSupply.equals(pendingSupply), event, "pendingSupply");
+    }
+
+    private static void check(boolean condition, Event event, String field) {
+        if (!condition) {
+            throw new IllegalStateException("Mirror diverged on " + field + " of " + event);
+        }
+    }
+}
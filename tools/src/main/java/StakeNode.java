@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * @title   Stake Node
+ *
+ * @dev     Blocking transport used by {@link StakeClient} to reach a node
+ *          running the {@link Stake} contract. Arguments use the same
+ *          String[][] encoding as Address.callWithReturnValue, one array
+ *          per method parameter.
+ *
+ *          Implementations must be safe to call from several threads, the
+ *          client runs up to its pool size of requests at the same time.
+ */
+public interface StakeNode {
+
+    /**
+     * Returns the height of the latest block
+     *
+     * @return latest block height
+     */
+    long latestHeight() throws IOException;
+
+    /**
+     * Invokes a view method of the contract on the block at the given height
+     *
+     * @param height Block height the result must belong to
+     * @param method Method name
+     * @param args Method arguments
+     * @return value returned by the method at that height
+     * @throws StaleHeightException if the node can no longer answer at that height
+     */
+    String invokeView(long height, String method, String[][] args) throws IOException;
+
+    /**
+     * Sends a call to a state modifiable method of the contract, its
+     * effects are only visible once the transaction is confirmed
+     *
+     * @param sender Caller address
+     * @param value Nuls sent with the call
+     * @param method Method name
+     * @param args Method arguments
+     * @return transaction hash
+     */
+    String call(String sender, BigInteger value, String method, String[][] args) throws IOException;
+
+    /**
+     * Returns the outcome of a transaction sent with {@link #call}
+     *
+     * @param txHash Transaction hash
+     * @return confirmation, null while the transaction is not confirmed
+     */
+    Confirmation confirmation(String txHash) throws IOException;
+
+    /**
+     * Outcome of a confirmed transaction, a contract call that reverted
+     * is still included in a block
+     */
+    class Confirmation {
+        private final long      height;         // Height of the block that included the transaction
+        private final boolean   success;        // Whether the contract call succeeded
+        private final String    errorMessage;   // Revert reason, null on success
+
+        public Confirmation(long height, boolean success, String errorMessage) {
+            this.height         = height;
+            this.success        = success;
+            this.errorMessage   = errorMessage;
+        }
+
+        public long getHeight() {
+            return height;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+    }
+
+    /**
+     * Thrown when a confirmed contract call reverted
+     */
+    class CallRevertedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final String    txHash;
+        private final long      height;
+        private final String    reason;
+
+        public CallRevertedException(String txHash, long height, String reason) {
+            super("Call " + txHash + " reverted at height " + height + ": " + reason);
+            this.txHash = txHash;
+            this.height = height;
+            this.reason = reason;
+        }
+
+        public String getTxHash() {
+            return txHash;
+        }
+
+        public long getHeight() {
+            return height;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+
+    /**
+     * Thrown when a view is requested at a height the node has already moved past
+     */
+    class StaleHeightException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final long height;
+        private final long latestHeight;
+
+        public StaleHeightException(long height, long latestHeight) {
+            super("Height " + height + " is stale, latest is " + latestHeight);
+            this.height = height;
+            this.latestHeight = latestHeight;
+        }
+
+        public long getHeight() {
+            return height;
+        }
+
+        public long getLatestHeight() {
+            return latestHeight;
+        }
+    }
+}
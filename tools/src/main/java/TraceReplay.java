@@ -0,0 +1,363 @@
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * @title   Stake Trace Replay
+ *
+ * @dev     Replays a recorded {@link CallTrace} against the real {@link Stake}
+ *          contract through {@link StakeHarness} and reports, per method, the
+ *          map reads, state writes, external calls and events counted while
+ *          the contract ran, together with the replay throughput.
+ *
+ *          The report can be saved as a baseline and later runs compared
+ *          against it, so a contract change that makes the recorded traffic
+ *          more expensive is flagged. Any change in the number of calls that
+ *          revert is flagged too, since cheaper reverted calls would
+ *          otherwise lower the per call cost of traffic that now fails.
+ *
+ *          Usage:
+ *
+ *              TraceReplay <trace> [--fee amount] [--epoch-length seconds] [--baseline file]
+ *                          [--save-baseline file] [--throughput-tolerance percent]
+ *
+ *          With --epoch-length the contract is switched to epoch mode with
+ *          setEpochLength before the first call of the trace.
+ *
+ *          Exits with status 1 when a regression against the baseline is found
+ *          and with status 2 on invalid options or unreadable input.
+ */
+public class TraceReplay {
+
+    /// Constants
+    private static final String     USAGE       = "Usage: TraceReplay <trace> [--fee amount] [--epoch-length seconds] "
+            + "[--baseline file] [--save-baseline file] [--throughput-tolerance percent]";
+    private static final BigInteger DEFAULT_FEE = BigInteger.valueOf(1_000_000);
+    private static final String     TOTAL       = "total";                         // Baseline key of the total row
+    private static final String[]   COUNTERS    = {"mapReads", "stateWrites", "externalCalls", "events", "eventFields"};
+
+    /// Variables
+    private final Map<String, MethodStats> stats = new LinkedHashMap<String, MethodStats>();   // Stats by method, in trace order
+
+    private TraceReplay() {
+    }
+
+    /**
+     * Replays a trace
+     *
+     * @param trace Recorded calls
+     * @param harness Contract to replay against
+     * @return replay report
+     */
+    public static TraceReplay run(CallTrace trace, StakeHarness harness) {
+        TraceReplay report = new TraceReplay();
+        for (CallTrace.Call call : trace.getCalls()) {
+            MethodStats s = report.stats(call.getMethod());
+
+            long reads      = harness.getMapReads();
+            long writes     = harness.getStateWrites();
+            long external   = harness.getExternalCalls();
+            long events     = harness.getEvents();
+            long fields     = harness.getEventFields();
+            long start      = System.nanoTime();
+
+            try {
+                invoke(harness, call);
+            } catch (IllegalStateException e) {
+                s.reverted++;
+            }
+
+            s.nanos         += System.nanoTime() - start;
+            s.calls++;
+            s.counters[0]   += harness.getMapReads() - reads;
+            s.counters[1]   += harness.getStateWrites() - writes;
+            s.counters[2]   += harness.getExternalCalls() - external;
+            s.counters[3]   += harness.getEvents() - events;
+            s.counters[4]   += harness.getEventFields() - fields;
+        }
+        return report;
+    }
+
+    /*===========================================
+
+      REPORT
+
+     ===========================================*/
+
+    /**
+     * Prints the report
+     *
+     * @param out Destination stream
+     */
+    public void print(PrintStream out) {
+        out.printf("%-20s %10s %9s %14s %14s %14s %12s %12s %14s%n",
+                "method", "calls", "reverted", "mapReads/call", "writes/call", "external/call", "events/call",
+                "fields/call", "calls/s");
+
+        for (Map.Entry<String, MethodStats> entry : stats.entrySet()) {
+            print(out, entry.getKey(), entry.getValue());
+        }
+        print(out, TOTAL, total());
+    }
+
+    /**
+     * Returns the report as a baseline
+     *
+     * @return baseline properties
+     */
+    public Properties toBaseline() {
+        Properties baseline = new Properties();
+        for (Map.Entry<String, MethodStats> entry : rows().entrySet()) {
+            MethodStats s = entry.getValue();
+            baseline.setProperty(entry.getKey() + ".calls", String.valueOf(s.calls));
+            baseline.setProperty(entry.getKey() + ".reverted", String.valueOf(s.reverted));
+            for (int i = 0; i < COUNTERS.length; i++) {
+                baseline.setProperty(entry.getKey() + "." + COUNTERS[i], String.valueOf(s.counters[i]));
+            }
+            baseline.setProperty(entry.getKey() + ".throughput", String.valueOf(s.throughput()));
+        }
+        return baseline;
+    }
+
+    /**
+     * Compares the report with a baseline
+     *
+     * @param baseline Baseline saved by a previous run
+     * @param throughputTolerance Allowed throughput drop in percent, negative to ignore throughput
+     * @return regressions found, empty if none
+     */
+    public List<String> compare(Properties baseline, double throughputTolerance) {
+        List<String> regressions = new ArrayList<String>();
+        Map<String, MethodStats> rows = rows();
+        for (String key : baseline.stringPropertyNames()) {
+            if (key.endsWith(".calls") && !rows.containsKey(key.substring(0, key.length() - ".calls".length()))) {
+                regressions.add(key.substring(0, key.length() - ".calls".length()) + ": missing from replay");
+            }
+        }
+
+        for (Map.Entry<String, MethodStats> entry : rows.entrySet()) {
+            String method = entry.getKey();
+            MethodStats s = entry.getValue();
+
+            String baseCalls = baseline.getProperty(method + ".calls");
+            if (baseCalls == null) {
+                regressions.add(method + ": missing from baseline");
+                continue;
+            }
+            long calls = Long.parseLong(baseCalls);
+            if (TOTAL.equals(method) && calls != s.calls) {
+                regressions.add(String.format("%s: calls %d -> %d", method, calls, s.calls));
+            }
+
+            String baseReverted = baseline.getProperty(method + ".reverted");
+            if (baseReverted == null) {
+                regressions.add(method + ": no reverted count in baseline");
+            } else if (Long.parseLong(baseReverted) != s.reverted) {
+                regressions.add(String.format("%s: reverted %s -> %d", method, baseReverted, s.reverted));
+            }
+
+            for (int i = 0; i < COUNTERS.length; i++) {
+                double before = perCall(Long.parseLong(baseline.getProperty(method + "." + COUNTERS[i], "0")), calls);
+                double after = perCall(s.counters[i], s.calls);
+                if (after > before) {
+                    regressions.add(String.format("%s: %s/call %.2f -> %.2f", method, COUNTERS[i], before, after));
+                }
+            }
+
+            if (throughputTolerance >= 0) {
+                double before = Double.parseDouble(baseline.getProperty(method + ".throughput", "0"));
+                double after = s.throughput();
+                if (after < before * (1 - throughputTolerance / 100)) {
+                    regressions.add(String.format("%s: calls/s %.0f -> %.0f", method, before, after));
+                }
+            }
+        }
+        return regressions;
+    }
+
+    /*===========================================
+
+      MAIN
+
+     ===========================================*/
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            usage(null);
+        }
+
+        BigInteger fee = DEFAULT_FEE;
+        long epochLength = 0;
+        String baselineFile = null;
+        String saveBaselineFile = null;
+        double throughputTolerance = -1;
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                usage("Missing value for option " + args[i]);
+            }
+            try {
+                if ("--fee".equals(args[i])) {
+                    fee = new BigInteger(args[i + 1]);
+                } else if ("--epoch-length".equals(args[i])) {
+                    epochLength = Long.parseLong(args[i + 1]);
+                } else if ("--baseline".equals(args[i])) {
+                    baselineFile = args[i + 1];
+                } else if ("--save-baseline".equals(args[i])) {
+                    saveBaselineFile = args[i + 1];
+                } else if ("--throughput-tolerance".equals(args[i])) {
+                    throughputTolerance = Double.parseDouble(args[i + 1]);
+                } else {
+                    usage("Unknown option " + args[i]);
+                }
+            } catch (NumberFormatException e) {
+                usage("Invalid value " + args[i + 1] + " for option " + args[i]);
+            }
+        }
+
+        CallTrace trace = null;
+        try (Reader in = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8)) {
+            trace = CallTrace.read(in);
+        } catch (IOException | IllegalArgumentException e) {
+            usage("Cannot read trace " + args[0] + ": " + e.getMessage());
+        }
+
+        StakeHarness harness = new StakeHarness(fee);
+        if (epochLength > 0) {
+            long start = trace.size() == 0 ? 0 : trace.getCalls().get(0).getTimestamp();
+            harness.setEpochLength(epochLength, start);
+        }
+
+        TraceReplay report = run(trace, harness);
+        report.print(System.out);
+
+        if (saveBaselineFile != null) {
+            try (OutputStream out = new FileOutputStream(saveBaselineFile)) {
+                report.toBaseline().store(out, "Stake trace replay baseline for " + args[0]);
+            }
+        }
+
+        if (baselineFile != null) {
+            Properties baseline = new Properties();
+            try (InputStream in = new FileInputStream(baselineFile)) {
+                baseline.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                usage("Cannot read baseline " + baselineFile + ": " + e.getMessage());
+            }
+            List<String> regressions = report.compare(baseline, throughputTolerance);
+            if (!regressions.isEmpty()) {
+                System.out.println();
+                System.out.println("Regressions against " + baselineFile + ":");
+                for (String regression : regressions) {
+                    System.out.println("  " + regression);
+                }
+                System.exit(1);
+            }
+            System.out.println();
+            System.out.println("No regressions against " + baselineFile);
+        }
+    }
+
+    /*===========================================
+
+      PRIVATE FUNCTIONS
+
+     ===========================================*/
+
+    /**
+     * Prints an error and the usage, and exits with status 2 so
+     * invalid input is never mistaken for a regression
+     */
+    private static void usage(String error) {
+        if (error != null) {
+            System.err.println(error);
+        }
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    private static void invoke(StakeHarness harness, CallTrace.Call call) {
+        String method = call.getMethod();
+        if (CallTrace.STAKE.equals(method)) {
+            harness.stake(call.getSender(), call.getValue(), call.getAmount(), call.getTimestamp());
+        } else if (CallTrace.GET_REWARD.equals(method)) {
+            harness.getReward(call.getSender(), call.getValue(), call.getTimestamp());
+        } else if (CallTrace.NOTIFY.equals(method)) {
+            harness.notifyRewardAmount(call.getSender(), call.getValue(), call.getAmount(), call.getTimestamp());
+        } else {
+            harness._payable(call.getSender(), call.getValue(), call.getTimestamp());
+        }
+    }
+
+    /**
+     * Returns the stats of every method followed by their total
+     */
+    private Map<String, MethodStats> rows() {
+        Map<String, MethodStats> rows = new LinkedHashMap<String, MethodStats>(stats);
+        rows.put(TOTAL, total());
+        return rows;
+    }
+
+    private MethodStats total() {
+        MethodStats total = new MethodStats();
+        for (MethodStats s : stats.values()) {
+            total.add(s);
+        }
+        return total;
+    }
+
+    private MethodStats stats(String method) {
+        MethodStats s = stats.get(method);
+        if (s == null) {
+            s = new MethodStats();
+            stats.put(method, s);
+        }
+        return s;
+    }
+
+    private static void print(PrintStream out, String method, MethodStats s) {
+        out.printf("%-20s %10d %9d %14.2f %14.2f %14.2f %12.2f %12.2f %14.0f%n",
+                method, s.calls, s.reverted,
+                perCall(s.counters[0], s.calls), perCall(s.counters[1], s.calls),
+                perCall(s.counters[2], s.calls), perCall(s.counters[3], s.calls),
+                perCall(s.counters[4], s.calls), s.throughput());
+    }
+
+    private static double perCall(long total, long calls) {
+        return calls == 0 ? 0 : (double) total / calls;
+    }
+
+    /**
+     * Accumulated cost of the calls to one method
+     */
+    private static class MethodStats {
+        private long   calls    = 0;
+        private long   reverted = 0;
+        private long   nanos    = 0;
+        private long[] counters = new long[COUNTERS.length];   // Same order as COUNTERS
+
+        private void add(MethodStats other) {
+            calls    += other.calls;
+            reverted += other.reverted;
+            nanos    += other.nanos;
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] += other.counters[i];
+            }
+        }
+
+        private double throughput() {
+            return nanos == 0 ? 0 : calls * 1e9 / nanos;
+        }
+    }
+}
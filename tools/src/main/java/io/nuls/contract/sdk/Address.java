@@ -0,0 +1,79 @@
+package io.nuls.contract.sdk;
+
+import java.math.BigInteger;
+
+/**
+ * Off-chain stand-in for the NULS SDK address. Transfers and contract
+ * calls are handled by the {@link VirtualMachine} bound to the calling thread
+ */
+public class Address {
+
+    private final String address;
+
+    public Address(String address) {
+        if (address == null || address.isEmpty()) {
+            throw new IllegalArgumentException("Invalid Address");
+        }
+        this.address = address;
+    }
+
+    /**
+     * Returns the Nuls balance of the address
+     *
+     * @return Nuls balance
+     */
+    public BigInteger balance() {
+        return VirtualMachine.current().balanceOf(this);
+    }
+
+    /**
+     * Transfers Nuls from the contract to this address
+     *
+     * @param value Nuls to transfer
+     */
+    public void transfer(BigInteger value) {
+        VirtualMachine.current().transfer(this, value);
+    }
+
+    /**
+     * Calls a method of the contract at this address
+     *
+     * @param methodName Method name
+     * @param methodDesc Method descriptor, may be empty
+     * @param args Method arguments
+     * @param value Nuls sent with the call
+     */
+    public void call(String methodName, String methodDesc, String[][] args, BigInteger value) {
+        VirtualMachine.current().call(this, methodName, args, value);
+    }
+
+    /**
+     * Calls a method of the contract at this address
+     *
+     * @param methodName Method name
+     * @param methodDesc Method descriptor, may be empty
+     * @param args Method arguments
+     * @param value Nuls sent with the call
+     * @return value returned by the method
+     */
+    public String callWithReturnValue(String methodName, String methodDesc, String[][] args, BigInteger value) {
+        return VirtualMachine.current().call(this, methodName, args, value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return address.equals(((Address) o).address);
+    }
+
+    @Override
+    public int hashCode() {
+        return address.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return address;
+    }
+}
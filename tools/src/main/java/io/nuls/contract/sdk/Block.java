@@ -0,0 +1,29 @@
+package io.nuls.contract.sdk;
+
+/**
+ * Off-chain stand-in for the NULS SDK block of the current call,
+ * answered by the {@link VirtualMachine} bound to the calling thread
+ */
+public class Block {
+
+    private Block() {
+    }
+
+    /**
+     * Returns the block timestamp in seconds
+     *
+     * @return block timestamp
+     */
+    public static long timestamp() {
+        return VirtualMachine.current().timestamp();
+    }
+
+    /**
+     * Returns the block height
+     *
+     * @return block height
+     */
+    public static long number() {
+        return VirtualMachine.current().number();
+    }
+}
@@ -0,0 +1,13 @@
+package io.nuls.contract.sdk;
+
+/**
+ * Off-chain stand-in for the NULS SDK contract interface
+ */
+public interface Contract {
+
+    /**
+     * Called when Nuls are sent to the contract without a method
+     */
+    default void _payable() {
+    }
+}
@@ -0,0 +1,7 @@
+package io.nuls.contract.sdk;
+
+/**
+ * Off-chain stand-in for the NULS SDK event marker interface
+ */
+public interface Event {
+}
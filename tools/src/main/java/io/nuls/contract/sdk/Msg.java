@@ -0,0 +1,40 @@
+package io.nuls.contract.sdk;
+
+import java.math.BigInteger;
+
+/**
+ * Off-chain stand-in for the NULS SDK message of the current call,
+ * answered by the {@link VirtualMachine} bound to the calling thread
+ */
+public class Msg {
+
+    private Msg() {
+    }
+
+    /**
+     * Returns the caller address
+     *
+     * @return caller address
+     */
+    public static Address sender() {
+        return VirtualMachine.current().sender();
+    }
+
+    /**
+     * Returns the Nuls sent with the call
+     *
+     * @return Nuls sent with the call
+     */
+    public static BigInteger value() {
+        return VirtualMachine.current().value();
+    }
+
+    /**
+     * Returns the contract address
+     *
+     * @return contract address
+     */
+    public static Address address() {
+        return VirtualMachine.current().contractAddress();
+    }
+}
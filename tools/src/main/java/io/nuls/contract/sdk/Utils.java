@@ -0,0 +1,40 @@
+package io.nuls.contract.sdk;
+
+/**
+ * Off-chain stand-in for the NULS SDK utilities, a failed require reverts
+ * the call running on the {@link VirtualMachine} bound to the calling thread
+ */
+public class Utils {
+
+    private Utils() {
+    }
+
+    public static void require(boolean expression) {
+        if (!expression) {
+            revert();
+        }
+    }
+
+    public static void require(boolean expression, String errorMessage) {
+        if (!expression) {
+            revert(errorMessage);
+        }
+    }
+
+    public static void revert() {
+        revert(null);
+    }
+
+    public static void revert(String errorMessage) {
+        throw new VirtualMachine.Revert(errorMessage);
+    }
+
+    /**
+     * Emits an event of the current call
+     *
+     * @param event Event to emit
+     */
+    public static void emit(Event event) {
+        VirtualMachine.current().emit(event);
+    }
+}
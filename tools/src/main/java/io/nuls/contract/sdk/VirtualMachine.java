@@ -0,0 +1,253 @@
+package io.nuls.contract.sdk;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Off-chain stand-in for the NULS contract VM, not part of the NULS SDK.
+ *
+ * Holds the block and message of the call in progress, the Nuls balances
+ * and the events emitted, so contract code compiled against this package
+ * can run outside of a node. A call runs between {@link #begin} and either
+ * {@link #commit} or {@link #rollback}, on the thread that began it.
+ * Calls to other contracts are answered by a {@link CallHandler}, by
+ * default a token that approves and transfers any amount.
+ */
+public class VirtualMachine {
+
+    /// Constants
+    private static final ThreadLocal<VirtualMachine> CURRENT   = new ThreadLocal<VirtualMachine>();
+    private static final BigInteger                  UNLIMITED = BigInteger.TEN.pow(40);   // Allowance of the default token
+
+    /// Variables
+    private final Address contractAddress;                  // Address of the contract running
+    private CallHandler   callHandler = new CallHandler() {
+        @Override
+        public String call(Address target, String method, String[][] args) {
+            if ("allowance".equals(method)) {
+                return UNLIMITED.toString();
+            } else if ("balanceOf".equals(method)) {
+                return "0";
+            }
+            return "true";
+        }
+    };
+
+    private VirtualMachine previous;                        // Machine bound to the thread before the current call
+    private boolean        running       = false;           // If a call is in progress
+    private Address        sender;                          // Caller of the current call
+    private BigInteger     value         = BigInteger.ZERO; // Nuls sent with the current call
+    private long           timestamp     = 0;               // Block timestamp of the current call
+    private long           number        = 0;               // Block height of the current call
+    private long           externalCalls = 0;               // Transfers and contract calls made, reverted calls included
+
+    private final Map<Address, BigInteger> balances = new HashMap<Address, BigInteger>();  // Nuls balances
+    private final Map<Address, BigInteger> touched  = new HashMap<Address, BigInteger>();  // Balances before the current call
+    private final List<Event>              events   = new ArrayList<Event>();              // Events of the current call
+
+    /**
+     * Constructor
+     *
+     * @param contractAddress Address of the contract that will run on this machine
+     */
+    public VirtualMachine(Address contractAddress) {
+        this.contractAddress = contractAddress;
+    }
+
+    /**
+     * Returns the machine running a call on the current thread
+     *
+     * @return machine running the current call
+     */
+    public static VirtualMachine current() {
+        VirtualMachine vm = CURRENT.get();
+        if (vm == null) {
+            throw new IllegalStateException("No call in progress on this thread");
+        }
+        return vm;
+    }
+
+    /*===========================================
+
+      CALLS
+
+     ===========================================*/
+
+    /**
+     * Starts a call on the current thread, the Nuls sent are credited to the contract
+     *
+     * @param sender Caller address, null for views
+     * @param value Nuls sent with the call
+     * @param timestamp Block timestamp
+     * @param number Block height
+     */
+    public void begin(Address sender, BigInteger value, long timestamp, long number) {
+        if (running) {
+            throw new IllegalStateException("Call already in progress");
+        }
+        this.running    = true;
+        this.previous   = CURRENT.get();
+        this.sender     = sender;
+        this.value      = value == null ? BigInteger.ZERO : value;
+        this.timestamp  = timestamp;
+        this.number     = number;
+        CURRENT.set(this);
+        if (this.value.signum() > 0) {
+            credit(contractAddress, this.value);
+        }
+    }
+
+    /**
+     * Ends the current call keeping its effects
+     *
+     * @return events emitted by the call, in order
+     */
+    public List<Event> commit() {
+        List<Event> emitted = new ArrayList<Event>(events);
+        end();
+        return emitted;
+    }
+
+    /**
+     * Ends the current call discarding its transfers and events
+     */
+    public void rollback() {
+        for (Map.Entry<Address, BigInteger> entry : touched.entrySet()) {
+            balances.put(entry.getKey(), entry.getValue());
+        }
+        end();
+    }
+
+    /*===========================================
+
+      VIEWS
+
+     ===========================================*/
+
+    public Address contractAddress() {
+        return contractAddress;
+    }
+
+    public Address sender() {
+        return sender;
+    }
+
+    public BigInteger value() {
+        return value;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public long number() {
+        return number;
+    }
+
+    /**
+     * Returns the transfers and contract calls made so far, reverted calls included
+     *
+     * @return external calls made
+     */
+    public long getExternalCalls() {
+        return externalCalls;
+    }
+
+    /**
+     * Returns the Nuls balance of an address
+     *
+     * @param address Address
+     * @return Nuls balance
+     */
+    public BigInteger balanceOf(Address address) {
+        BigInteger balance = balances.get(address);
+        return balance == null ? BigInteger.ZERO : balance;
+    }
+
+    /**
+     * Sets how calls to other contracts are answered
+     *
+     * @param callHandler Handler of calls to other contracts
+     */
+    public void setCallHandler(CallHandler callHandler) {
+        this.callHandler = callHandler;
+    }
+
+    /*===========================================
+
+      SDK FUNCTIONS
+
+     ===========================================*/
+
+    void transfer(Address to, BigInteger amount) {
+        externalCalls++;
+        if (amount.signum() < 0 || balanceOf(contractAddress).compareTo(amount) < 0) {
+            throw new Revert("Insufficient balance");
+        }
+        credit(contractAddress, amount.negate());
+        credit(to, amount);
+    }
+
+    String call(Address target, String method, String[][] args, BigInteger value) {
+        if (value != null && value.signum() > 0) {
+            transfer(target, value);
+        }
+        externalCalls++;
+        return callHandler.call(target, method, args);
+    }
+
+    void emit(Event event) {
+        events.add(event);
+    }
+
+    /*===========================================
+
+      PRIVATE FUNCTIONS
+
+     ===========================================*/
+
+    private void credit(Address address, BigInteger amount) {
+        if (!touched.containsKey(address)) {
+            touched.put(address, balanceOf(address));
+        }
+        balances.put(address, balanceOf(address).add(amount));
+    }
+
+    private void end() {
+        if (!running) {
+            throw new IllegalStateException("No call in progress");
+        }
+        touched.clear();
+        events.clear();
+        running = false;
+        sender  = null;
+        value   = BigInteger.ZERO;
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+        previous = null;
+    }
+
+    /**
+     * Answers calls made by the contract to other contracts
+     */
+    public interface CallHandler {
+        String call(Address target, String method, String[][] args);
+    }
+
+    /**
+     * Thrown when the running call reverts
+     */
+    public static class Revert extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public Revert(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.nuls.contract.sdk.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Off-chain stand-in for the NULS SDK annotation, marks a method that accepts Nuls
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Payable {
+}
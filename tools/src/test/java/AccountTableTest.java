@@ -0,0 +1,64 @@
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Address interning and value storage of AccountTable
+ */
+public class AccountTableTest {
+
+    @Test
+    public void internReturnsStableIds() {
+        AccountTable table = new AccountTable(16);
+        int bob = table.intern("NULSd6Hbob");
+        int alice = table.intern("NULSd6Halice");
+        assertEquals(bob, table.intern("NULSd6Hbob"));
+        assertEquals(alice, table.find("NULSd6Halice"));
+        assertEquals(-1, table.find("NULSd6Hcarol"));
+        assertEquals("NULSd6Halice", table.address(alice));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void rejectedAddressLeavesNoBytesBehind() {
+        AccountTable table = new AccountTable(16);
+        try {
+            table.intern("NULSd6HΔbad");
+            fail("Address with a wide character accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Invalid Address", e.getMessage());
+        }
+        int id = table.intern("NULSd6Hxyz");
+        assertEquals("NULSd6Hxyz", table.address(id));
+        assertEquals(id, table.find("NULSd6Hxyz"));
+        assertEquals(id, table.intern("NULSd6Hxyz"));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        AccountTable table = new AccountTable(16);
+        for (int i = 0; i < 1000; i++) {
+            table.addBalance(table.intern("NULSd6Haccount" + i), BigInteger.valueOf(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            int id = table.find("NULSd6Haccount" + i);
+            assertEquals("NULSd6Haccount" + i, table.address(id));
+            assertEquals(BigInteger.valueOf(i), table.balanceOf(id));
+        }
+    }
+
+    @Test
+    public void valuesOutsideLongUseTheSideTable() {
+        AccountTable table = new AccountTable(16);
+        int id = table.intern("NULSd6Hwhale");
+        BigInteger huge = BigInteger.TEN.pow(30);
+        table.addBalance(id, huge);
+        table.addBalance(id, huge.negate());
+        table.addBalance(id, BigInteger.valueOf(Long.MIN_VALUE));
+        assertEquals(BigInteger.valueOf(Long.MIN_VALUE), table.balanceOf(id));
+    }
+}
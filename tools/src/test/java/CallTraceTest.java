@@ -0,0 +1,103 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Text format of CallTrace and its Recorder
+ */
+public class CallTraceTest {
+
+    private static final BigInteger FEE     = BigInteger.valueOf(1_000_000);
+    private static final BigInteger AMOUNT  = BigInteger.valueOf(1_000_000_000);
+
+    @Test
+    public void writeThenReadReturnsTheSameCalls() throws IOException {
+        CallTrace trace = sample();
+        StringWriter out = new StringWriter();
+        trace.write(out);
+
+        CallTrace read = CallTrace.read(new StringReader(out.toString()));
+        assertEquals(trace.size(), read.size());
+        for (int i = 0; i < trace.size(); i++) {
+            assertEquals(trace.getCalls().get(i).toString(), read.getCalls().get(i).toString());
+        }
+        assertNull(read.getCalls().get(2).getAmount());
+        assertEquals(BigInteger.TEN.pow(30), read.getCalls().get(1).getAmount());
+    }
+
+    @Test
+    public void readSkipsCommentsAndBlankLines() throws IOException {
+        CallTrace trace = CallTrace.read(new StringReader(
+                "# recorded on testnet\n"
+                + "\n"
+                + " 100, stake, NULSd6Hbob, 1000000, 1000000000 \n"
+                + "# a comment between calls\n"
+                + "200,getReward,NULSd6Hbob,1000000,\n"));
+        assertEquals(2, trace.size());
+        CallTrace.Call stake = trace.getCalls().get(0);
+        assertEquals(100, stake.getTimestamp());
+        assertEquals(CallTrace.STAKE, stake.getMethod());
+        assertEquals("NULSd6Hbob", stake.getSender());
+        assertEquals(FEE, stake.getValue());
+        assertEquals(AMOUNT, stake.getAmount());
+        assertEquals(CallTrace.GET_REWARD, trace.getCalls().get(1).getMethod());
+    }
+
+    @Test
+    public void invalidLinesReportTheirLineNumber() {
+        assertInvalid("# header\n100,stake,NULSd6Hbob,1000000,\n", "Invalid call at line 2: Missing amount for stake");
+        assertInvalid("100,withdraw,NULSd6Hbob,0,\n", "Invalid call at line 1: Unknown method withdraw");
+        assertInvalid("100,getReward,NULSd6Hbob,x,\n", "Invalid call at line 1: Invalid number");
+        assertInvalid("100,getReward,NULSd6Hbob,0\n", "Invalid call at line 1: Expected 5 fields but found 4");
+        assertInvalid("200,_payable,NULSd6Htreasury,5,\n100,_payable,NULSd6Htreasury,5,\n",
+                "Invalid call at line 2: Calls must be ordered by timestamp");
+    }
+
+    @Test
+    public void recorderStreamsAReadableTrace() throws IOException {
+        CallTrace trace = sample();
+        StringWriter out = new StringWriter();
+        try (CallTrace.Recorder recorder = new CallTrace.Recorder(out)) {
+            for (CallTrace.Call call : trace.getCalls()) {
+                recorder.record(call);
+            }
+            try {
+                recorder.record(new CallTrace.Call(0, CallTrace.PAYABLE, "NULSd6Htreasury", FEE, null));
+                fail("Call out of order recorded");
+            } catch (IllegalArgumentException e) {
+                assertEquals("Calls must be ordered by timestamp", e.getMessage());
+            }
+        }
+
+        StringWriter written = new StringWriter();
+        trace.write(written);
+        assertEquals(written.toString(), out.toString());
+        assertTrue(out.toString().startsWith("# timestamp,method,sender,value,amount\n"));
+    }
+
+    private static CallTrace sample() {
+        CallTrace trace = new CallTrace();
+        trace.stake(100, "NULSd6Hbob", FEE, AMOUNT);
+        trace.notifyRewardAmount(200, "NULSd6Hadmin", BigInteger.TEN.pow(30), BigInteger.TEN.pow(30));
+        trace.getReward(200, "NULSd6Hbob", FEE);
+        trace._payable(300, "NULSd6Htreasury", AMOUNT);
+        return trace;
+    }
+
+    private static void assertInvalid(String text, String message) {
+        try {
+            CallTrace.read(new StringReader(text));
+            fail("Invalid trace accepted: " + text);
+        } catch (IOException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ParameterSweep results depend only on the seed, not on the number of
+ * threads, and the sweep leaves the JVM-wide contract constants as it found them
+ */
+public class ParameterSweepTest {
+
+    private static final BigInteger FEE = BigInteger.valueOf(1_000_000);
+
+    private final List<ParameterSweep.Parameters> parameters = Arrays.asList(
+            new ParameterSweep.Parameters(86400, FEE, FEE),
+            new ParameterSweep.Parameters(86400 * 2, FEE.multiply(BigInteger.TEN), FEE));
+
+    @Test
+    public void threadCountDoesNotChangeResults() throws Exception {
+        ParameterSweep sweep = new ParameterSweep(15, 2);
+        List<ParameterSweep.Result> single = sweep.run(parameters, 4, 42, 1);
+        List<ParameterSweep.Result> parallel = sweep.run(parameters, 4, 42, 4);
+
+        assertEquals(parameters.size(), single.size());
+        assertEquals(parameters.size(), parallel.size());
+        for (int i = 0; i < parameters.size(); i++) {
+            assertEquals(single.get(i).toCsv(), parallel.get(i).toCsv());
+        }
+    }
+
+    @Test
+    public void constantsAreRestored() throws Exception {
+        long duration = StakeHarness.getDuration();
+        BigInteger minNulsAmount = StakeHarness.getMinNulsAmount();
+        ParameterSweep.Parameters other = new ParameterSweep.Parameters(duration + 3600,
+                minNulsAmount.multiply(BigInteger.TEN), minNulsAmount.multiply(BigInteger.TEN));
+
+        new ParameterSweep(5, 1).run(Arrays.asList(other), 2, 1, 2);
+
+        assertEquals(duration, StakeHarness.getDuration());
+        assertEquals(minNulsAmount, StakeHarness.getMinNulsAmount());
+    }
+}
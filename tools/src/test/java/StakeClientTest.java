@@ -0,0 +1,152 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Coalescing, caching and confirmation of StakeClient against the real
+ * Stake contract served by LocalStakeNode
+ */
+public class StakeClientTest {
+
+    private static final BigInteger FEE     = BigInteger.valueOf(1_000_000);
+    private static final BigInteger AMOUNT  = BigInteger.valueOf(1_000_000_000);
+    private static final long       REFRESH = 60_000;   // Long enough that the height is only refreshed when told
+
+    private StakeHarness harness;
+    private LocalStakeNode node;
+    private StakeClient client;
+
+    @Before
+    public void setUp() {
+        harness = new StakeHarness(FEE);
+        BigInteger reward = BigInteger.valueOf(1000 * StakeHarness.getDuration());
+        harness.stake("bob", FEE, AMOUNT, 100);
+        harness.notifyRewardAmount(StakeHarness.ADMIN, reward, reward, 100);
+        node = new LocalStakeNode(harness, 200, 20);
+        client = new StakeClient(node, 8, REFRESH, 5);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+    }
+
+    @Test
+    public void concurrentViewsAreCoalesced() {
+        List<CompletableFuture<BigInteger>> results = new ArrayList<CompletableFuture<BigInteger>>();
+        for (int i = 0; i < 10; i++) {
+            results.add(client.earned("bob"));
+        }
+        for (CompletableFuture<BigInteger> result : results) {
+            assertEquals(BigInteger.valueOf(100_000), result.join());
+        }
+        assertEquals(1, node.getViewRequests());
+        assertEquals(2, node.getRequests());
+    }
+
+    @Test
+    public void viewsAreCachedAtTheSameHeight() {
+        BigInteger first = client.earned("bob").join();
+        assertEquals(first, client.earned("bob").join());
+        assertEquals(1, node.getViewRequests());
+        assertEquals(1, client.cachedViews());
+    }
+
+    @Test
+    public void newBlockEvictsOlderViews() {
+        assertEquals(BigInteger.valueOf(100_000), client.earned("bob").join());
+        client._balanceOf("bob").join();
+        assertEquals(2, client.cachedViews());
+
+        node.advance(10);
+        client.invalidate();
+        assertEquals(BigInteger.valueOf(110_000), client.earned("bob").join());
+        assertEquals(3, node.getViewRequests());
+        assertEquals(1, client.cachedViews());
+    }
+
+    @Test
+    public void staleHeightIsRetriedAtTheNewHeight() {
+        assertEquals(BigInteger.valueOf(100_000), client.earned("bob").join());
+
+        // The client still believes in the old height, the node answers it is stale
+        node.advance(10);
+        assertEquals(BigInteger.valueOf(110_000), client.allTimeEarned("bob").join());
+        assertEquals(3, node.getViewRequests());
+        assertEquals(1, client.cachedViews());
+
+        // Later views go straight to the new height
+        assertEquals(BigInteger.valueOf(110_000), client.earned("bob").join());
+        assertEquals(4, node.getViewRequests());
+    }
+
+    @Test
+    public void failedRequestIsNotCached() {
+        client.latestHeight().join();
+        node.failNext(1);
+        try {
+            client.earned("bob").join();
+            fail("Injected failure expected");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(0, client.cachedViews());
+
+        assertEquals(BigInteger.valueOf(100_000), client.earned("bob").join());
+        assertEquals(1, node.getViewRequests());
+        assertEquals(1, client.cachedViews());
+    }
+
+    @Test
+    public void callIsVisibleOnceConfirmed() throws Exception {
+        CompletableFuture<String> call = client.stake("alice", FEE, AMOUNT);
+
+        // Sent but not mined, the view still shows the old state
+        awaitMempool(1);
+        assertEquals(BigInteger.ZERO, client._balanceOf("alice").join());
+        Thread.sleep(50);
+        assertFalse(call.isDone());
+
+        node.advance(10);
+        call.join();
+        assertEquals(AMOUNT, client._balanceOf("alice").join());
+        assertEquals(AMOUNT.add(AMOUNT), client.totalSupply().join());
+    }
+
+    @Test
+    public void revertedCallCompletesExceptionally() throws Exception {
+        CompletableFuture<String> call = client.stake("alice", BigInteger.ZERO, AMOUNT);
+        awaitMempool(1);
+        node.advance(10);
+        try {
+            call.join();
+            fail("Reverted call completed successfully");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof StakeNode.CallRevertedException);
+            StakeNode.CallRevertedException reverted = (StakeNode.CallRevertedException) e.getCause();
+            assertEquals("Operation Fee not Paid", reverted.getReason());
+            assertEquals(2, reverted.getHeight());
+        }
+        assertEquals(BigInteger.ZERO, client._balanceOf("alice").join());
+    }
+
+    private void awaitMempool(int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (node.getMempoolSize() < size) {
+            assertTrue("Call never reached the node", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
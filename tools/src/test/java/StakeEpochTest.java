@@ -0,0 +1,142 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Epoch mode of the real Stake contract, rewards of 1000 per second and
+ * stakes of 1e9 so every reward per token step divides exactly
+ */
+public class StakeEpochTest {
+
+    private static final BigInteger FEE     = BigInteger.valueOf(1_000_000);
+    private static final BigInteger AMOUNT  = BigInteger.valueOf(1_000_000_000);
+    private static final long       HOUR    = 3600;
+
+    private StakeHarness harness;
+    private long duration;
+
+    @Before
+    public void setUp() {
+        harness = new StakeHarness(FEE);
+        duration = StakeHarness.getDuration();
+    }
+
+    @Test
+    public void midEpochStakeEarnsFromNextBoundary() {
+        harness.setEpochLength(HOUR, 0);
+        harness.stake("bob", FEE, AMOUNT, 100);
+        notify(1000, 10 * HOUR);
+
+        // Nothing accrues within an epoch
+        assertEquals(BigInteger.ZERO, harness.earned("bob", 10 * HOUR + HOUR - 1));
+
+        harness.stake("alice", FEE, AMOUNT, 10 * HOUR + HOUR / 2);
+        assertEquals(AMOUNT, harness.getPendingBalance("alice", 10 * HOUR + HOUR - 1));
+        assertEquals(BigInteger.ZERO, harness.earned("alice", 10 * HOUR + HOUR - 1));
+
+        // Bob alone for epoch 10, then both for epochs 11 and 12
+        assertEquals(BigInteger.valueOf(3_600_000), harness.earned("bob", 11 * HOUR));
+        assertEquals(BigInteger.valueOf(7_200_000), harness.earned("bob", 13 * HOUR + 500));
+        assertEquals(BigInteger.valueOf(3_600_000), harness.earned("alice", 13 * HOUR + 500));
+        assertEquals(BigInteger.ZERO, harness.getPendingBalance("alice", 13 * HOUR + 500));
+    }
+
+    @Test
+    public void stakePendingForSeveralEpochs() {
+        harness.setEpochLength(HOUR, 0);
+        notify(1000, 0);
+        harness.stake("bob", FEE, AMOUNT, 100);
+
+        // No interaction until epoch 5, bob is active since the end of epoch 0
+        assertEquals(BigInteger.valueOf(14_400_000), harness.earned("bob", 5 * HOUR + 10));
+
+        harness.stake("alice", FEE, AMOUNT, 5 * HOUR + 10);
+        assertEquals(BigInteger.ZERO, harness.getPendingBalance("bob", 5 * HOUR + 10));
+        assertEquals(AMOUNT, harness._balanceOf("bob"));
+        assertEquals(BigInteger.valueOf(14_400_000), harness.earned("bob", 5 * HOUR + 10));
+
+        BigInteger bob = harness.earned("bob", 10 * HOUR + 10);
+        BigInteger alice = harness.earned("alice", 10 * HOUR + 10);
+        assertEquals(BigInteger.valueOf(25_200_000), bob);
+        assertEquals(BigInteger.valueOf(7_200_000), alice);
+        assertEquals(BigInteger.valueOf((10 * HOUR - HOUR) * 1000), bob.add(alice));
+
+        harness.getReward("bob", FEE, 10 * HOUR + 10);
+        assertEquals(bob, harness.balanceOf("bob"));
+        assertEquals(BigInteger.ZERO, harness.earned("bob", 10 * HOUR + 10));
+    }
+
+    @Test
+    public void modeSwitchWithSettledPendingBalances() {
+        harness.setEpochLength(HOUR, 0);
+        notify(1000, 0);
+        harness.stake("bob", FEE, AMOUNT, 100);
+        harness.stake("alice", FEE, AMOUNT, HOUR + 100);
+
+        // Activates alice's supply at 2h, both pending balances are settled but not moved
+        harness.setEpochLength(0, 2 * HOUR + 100);
+        assertEquals(BigInteger.ZERO, harness.getPendingSupply());
+        assertEquals(BigInteger.ZERO, harness.getPendingBalance("bob", 2 * HOUR + 100));
+        assertEquals(BigInteger.ZERO, harness.getPendingBalance("alice", 2 * HOUR + 100));
+        assertEquals(AMOUNT, harness._balanceOf("alice"));
+        assertEquals(AMOUNT.add(AMOUNT), harness.totalSupply());
+
+        // Per second from 2h on
+        assertEquals(BigInteger.valueOf(5_000_000), harness.earned("bob", 10_000));
+        assertEquals(BigInteger.valueOf(1_400_000), harness.earned("alice", 10_000));
+
+        harness.getReward("bob", FEE, 10_000);
+        harness.stake("alice", FEE, AMOUNT.add(AMOUNT), 10_000);
+        assertEquals(BigInteger.valueOf(5_000_000), harness.balanceOf("bob"));
+        assertEquals(AMOUNT.multiply(BigInteger.valueOf(3)), harness._balanceOf("alice"));
+
+        assertEquals(BigInteger.valueOf(2_500_000), harness.earned("bob", 20_000));
+        assertEquals(BigInteger.valueOf(8_900_000), harness.earned("alice", 20_000));
+    }
+
+    @Test
+    public void notifyInEpochWherePeriodEnded() {
+        long epoch = 7 * HOUR;
+        harness.setEpochLength(epoch, 0);
+        notify(1000, 0);
+        harness.stake("bob", FEE, AMOUNT, 100);
+
+        // The period ends at 48h, in the middle of the epoch starting at 42h.
+        // Rewards from 42h to 48h were not accrued yet and roll into the new period
+        long notifyTime = duration + 200;
+        notify(2000, notifyTime);
+        assertEquals(6 * epoch, harness.lastTimeRewardUpdated());
+        assertEquals(6 * epoch + duration, harness.getPeriodFinish());
+        assertEquals(BigInteger.valueOf(2125), harness.getRewardRate());
+
+        // Everything but the first epoch, when nobody was active, is distributed
+        BigInteger distributed = BigInteger.valueOf((6 * epoch - epoch) * 1000 + 2125 * duration);
+        assertEquals(distributed, harness.earned("bob", 6 * epoch + duration + epoch));
+        assertEquals(harness.getRewardsNotified().subtract(BigInteger.valueOf(epoch * 1000)), distributed);
+    }
+
+    @Test
+    public void notifyInEpochAfterPeriodEnded() {
+        long epoch = 7 * HOUR;
+        harness.setEpochLength(epoch, 0);
+        notify(1000, 0);
+        harness.stake("bob", FEE, AMOUNT, 100);
+
+        // The period ended at 48h, the next epoch starts at 49h
+        notify(2000, 7 * epoch + 100);
+        assertEquals(7 * epoch, harness.lastTimeRewardUpdated());
+        assertEquals(BigInteger.valueOf(2000), harness.getRewardRate());
+
+        BigInteger first = BigInteger.valueOf((duration - epoch) * 1000);
+        assertEquals(first, harness.earned("bob", 7 * epoch + 100));
+        assertEquals(first.add(BigInteger.valueOf(epoch * 2000)), harness.earned("bob", 8 * epoch));
+    }
+
+    private void notify(long rate, long timestamp) {
+        BigInteger reward = BigInteger.valueOf(rate * duration);
+        harness.notifyRewardAmount(StakeHarness.ADMIN, reward, reward, timestamp);
+    }
+}
@@ -0,0 +1,224 @@
+import io.nuls.contract.sdk.Event;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Events of the real Stake contract carry the state a mirror needs
+ */
+public class StakeEventsTest {
+
+    private static final BigInteger FEE     = BigInteger.valueOf(1_000_000);
+    private static final BigInteger AMOUNT  = BigInteger.valueOf(1_000_000_000);
+    private static final long       HOUR    = 3600;
+
+    private StakeHarness harness;
+
+    @Before
+    public void setUp() {
+        harness = new StakeHarness(FEE);
+    }
+
+    @Test
+    public void stakedReportsPendingState() {
+        harness.setEpochLength(HOUR, 0);
+        harness.stake("bob", FEE, AMOUNT, 100);
+
+        Stake.Staked bob = last(Stake.Staked.class);
+        assertEquals(harness.getEventSequence(), bob.getSequence());
+        assertEquals(AMOUNT, bob.getBalance());
+        assertEquals(AMOUNT, bob.getPendingBalance());
+        assertEquals(0, bob.getActivation());
+        assertEquals(AMOUNT, bob.getTotalSupply());
+        assertEquals(AMOUNT, bob.getPendingSupply());
+
+        // Bob's supply becomes active at the first boundary, alice waits for the second one
+        harness.stake("alice", FEE, AMOUNT, HOUR + 100);
+        Stake.Staked alice = last(Stake.Staked.class);
+        assertEquals(AMOUNT, alice.getPendingBalance());
+        assertEquals(1, alice.getActivation());
+        assertEquals(AMOUNT.add(AMOUNT), alice.getTotalSupply());
+        assertEquals(AMOUNT, alice.getPendingSupply());
+    }
+
+    @Test
+    public void stakedWithoutEpochsHasNothingPending() {
+        harness.stake("bob", FEE, AMOUNT, 100);
+
+        Stake.Staked bob = last(Stake.Staked.class);
+        assertEquals(AMOUNT, bob.getBalance());
+        assertEquals(BigInteger.ZERO, bob.getPendingBalance());
+        assertEquals(-1, bob.getActivation());
+        assertEquals(BigInteger.ZERO, bob.getPendingSupply());
+    }
+
+    @Test
+    public void rewardPaidReportsPendingState() {
+        BigInteger reward = BigInteger.valueOf(1000 * StakeHarness.getDuration());
+        harness.setEpochLength(HOUR, 0);
+        harness.notifyRewardAmount(StakeHarness.ADMIN, reward, reward, 0);
+        harness.stake("bob", FEE, AMOUNT, 100);
+        harness.stake("bob", FEE, AMOUNT, 5 * HOUR + 100);
+        harness.getReward("bob", FEE, 5 * HOUR + 200);
+
+        Stake.RewardPaid paid = last(Stake.RewardPaid.class);
+        assertEquals(harness.getEventSequence(), paid.getSequence());
+        assertEquals(AMOUNT.add(AMOUNT), paid.getBalance());
+        assertEquals(AMOUNT, paid.getPendingBalance());
+        assertEquals(AMOUNT.add(AMOUNT), paid.getTotalSupply());
+        assertEquals(AMOUNT, paid.getPendingSupply());
+    }
+
+    @Test
+    public void epochLengthChangeIsAnnounced() {
+        BigInteger reward = BigInteger.valueOf(1000 * StakeHarness.getDuration());
+        harness.stake("bob", FEE, AMOUNT, 100);
+        harness.notifyRewardAmount(StakeHarness.ADMIN, reward, reward, 100);
+
+        harness.setEpochLength(HOUR, 5000);
+        Stake.EpochLengthChanged changed = last(Stake.EpochLengthChanged.class);
+        assertEquals(harness.getEventSequence(), changed.getSequence());
+        assertEquals(HOUR, changed.getEpochLength());
+        assertEquals(AMOUNT, changed.getTotalSupply());
+        assertEquals(5000, changed.getLastUpdateTime());
+        assertEquals(BigInteger.valueOf(490_000), changed.getRewardPerTokenStored());
+        assertEquals(harness.getRewardRate(), changed.getRewardRate());
+        assertEquals(harness.getPeriodFinish(), changed.getPeriodFinish());
+
+        harness.setEpochLength(0, 2 * HOUR);
+        changed = last(Stake.EpochLengthChanged.class);
+        assertEquals(harness.getEventSequence(), changed.getSequence());
+        assertEquals(0, changed.getEpochLength());
+        assertEquals(harness.lastTimeRewardUpdated(), changed.getLastUpdateTime());
+    }
+
+    @Test
+    public void operationFeePaidPrecedesStaked() {
+        harness.stake("bob", FEE, AMOUNT, 100);
+
+        List<Event> events = harness.getLastEvents();
+        assertEquals(2, events.size());
+        Stake.OperationFeePaid fee = (Stake.OperationFeePaid) events.get(0);
+        Stake.Staked staked = (Stake.Staked) events.get(1);
+        assertEquals(1, fee.getSequence());
+        assertEquals(2, staked.getSequence());
+        assertEquals("bob", fee.getUser().toString());
+        assertEquals(StakeHarness.TREASURY, fee.getTreasury().toString());
+        assertEquals(FEE, fee.getFee());
+        assertEquals(BigInteger.ZERO, fee.getRewards());
+        assertEquals(BigInteger.ZERO, fee.getRewardPerTokenStored());
+        assertEquals(0, fee.getLastUpdateTime());   // No period yet, rewards apply until periodFinish
+        assertEquals(AMOUNT, staked.getAmount());
+    }
+
+    @Test
+    public void rewardAddedReportsNewPeriod() {
+        long duration = StakeHarness.getDuration();
+        BigInteger reward = BigInteger.valueOf(1000 * duration);
+        harness.stake("bob", FEE, AMOUNT, 100);
+        harness.notifyRewardAmount(StakeHarness.ADMIN, reward, reward, 200);
+
+        Stake.RewardAdded added = last(Stake.RewardAdded.class);
+        assertEquals(3, added.getSequence());
+        assertEquals(reward, added.getReward());
+        assertEquals(200, added.getLastUpdateTime());
+        assertEquals(AMOUNT, added.getTotalSupply());
+        assertEquals(BigInteger.ZERO, added.getRewardPerTokenStored());
+        assertEquals(BigInteger.valueOf(1000), added.getRewardRate());
+        assertEquals(200 + duration, added.getPeriodFinish());
+
+        // Half way through, the leftover rolls into the new rate
+        harness.notifyRewardAmount(StakeHarness.ADMIN, reward, reward, 200 + duration / 2);
+        added = last(Stake.RewardAdded.class);
+        assertEquals(4, added.getSequence());
+        assertEquals(BigInteger.valueOf(1500), added.getRewardRate());
+        assertEquals(BigInteger.valueOf(1000 * (duration / 2) * 100_000_000L).divide(AMOUNT), added.getRewardPerTokenStored());
+    }
+
+    @Test
+    public void rewardPaidFollowsOperationFeePaid() {
+        BigInteger reward = BigInteger.valueOf(1000 * StakeHarness.getDuration());
+        harness.stake("bob", FEE, AMOUNT, 100);
+        harness.notifyRewardAmount(StakeHarness.ADMIN, reward, reward, 100);
+        harness.getReward("bob", FEE, 5000);
+
+        List<Event> events = harness.getLastEvents();
+        assertEquals(2, events.size());
+        Stake.OperationFeePaid fee = (Stake.OperationFeePaid) events.get(0);
+        Stake.RewardPaid paid = (Stake.RewardPaid) events.get(1);
+        assertEquals(fee.getSequence() + 1, paid.getSequence());
+        assertEquals(paid.getSequence(), harness.getEventSequence());
+        assertEquals(BigInteger.valueOf(4_900_000), fee.getRewards());
+        assertEquals(fee.getRewards(), paid.getAmount());
+        assertEquals(5000, fee.getLastUpdateTime());
+        assertEquals(fee.getRewardPerTokenStored(), paid.getRewardPerTokenStored());
+    }
+
+    @Test
+    public void dustedRewardAnnouncesActivation() {
+        // 5 per second, far below the minimum transferable amount
+        BigInteger reward = BigInteger.valueOf(5 * StakeHarness.getDuration());
+        harness.setEpochLength(HOUR, 0);
+        harness.notifyRewardAmount(StakeHarness.ADMIN, reward, reward, 0);
+        harness.stake("bob", FEE, AMOUNT, 100);
+        long before = harness.getEventSequence();
+
+        harness.getReward("bob", FEE, 2 * HOUR + 100);
+        List<Event> events = harness.getLastEvents();
+        assertEquals(2, events.size());
+        Stake.PendingSupplyActivated activated = (Stake.PendingSupplyActivated) events.get(0);
+        Stake.OperationFeePaid fee = (Stake.OperationFeePaid) events.get(1);
+        assertEquals(before + 1, activated.getSequence());
+        assertEquals(before + 2, fee.getSequence());
+        assertEquals(0, activated.getActivation());
+        assertEquals(HOUR, activated.getActivationTime());
+        assertEquals(BigInteger.ZERO, activated.getRewardPerToken());
+        assertEquals(AMOUNT, activated.getTotalSupply());
+        assertEquals(BigInteger.valueOf(18_000), fee.getRewards());
+        assertEquals(2 * HOUR, fee.getLastUpdateTime());
+        assertEquals(BigInteger.ZERO, harness.getPendingSupply());
+        assertEquals(AMOUNT, harness._balanceOf("bob"));
+    }
+
+    @Test
+    public void sequenceIsContiguousAcrossCalls() throws Exception {
+        BigInteger reward = BigInteger.valueOf(1000 * StakeHarness.getDuration());
+        List<Event> events = new ArrayList<Event>();
+        harness.setEpochLength(HOUR, 0);
+        events.addAll(harness.getLastEvents());
+        harness.notifyRewardAmount(StakeHarness.ADMIN, reward, reward, 0);
+        events.addAll(harness.getLastEvents());
+        harness.stake("bob", FEE, AMOUNT, 100);
+        events.addAll(harness.getLastEvents());
+        harness.stake("alice", FEE, AMOUNT, HOUR + 100);
+        events.addAll(harness.getLastEvents());
+        harness.getReward("bob", FEE, 3 * HOUR);
+        events.addAll(harness.getLastEvents());
+        harness.notifyRewardAmount(StakeHarness.ADMIN, reward, reward, 4 * HOUR);
+        events.addAll(harness.getLastEvents());
+        harness.setEpochLength(0, 5 * HOUR);
+        events.addAll(harness.getLastEvents());
+        harness.getReward("alice", FEE, 6 * HOUR);
+        events.addAll(harness.getLastEvents());
+
+        long expected = 1;
+        for (Event event : events) {
+            assertEquals(event.toString(), expected++, (long) (Long) event.getClass().getMethod("getSequence").invoke(event));
+        }
+        assertEquals(expected - 1, harness.getEventSequence());
+    }
+
+    private <T extends Event> T last(Class<T> type) {
+        List<Event> events = harness.getLastEvents();
+        assertTrue("No events emitted", !events.isEmpty());
+        Event event = events.get(events.size() - 1);
+        assertEquals(type, event.getClass());
+        return type.cast(event);
+    }
+}
@@ -0,0 +1,80 @@
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class StakeHarnessTest {
+
+    private static final BigInteger FEE    = BigInteger.valueOf(1_000_000);
+    private static final BigInteger AMOUNT = BigInteger.valueOf(1_000_000_000);
+
+    @Test
+    public void countsWhatTheContractDoes() {
+        StakeHarness harness = new StakeHarness(FEE);
+
+        harness.stake("alice", FEE, AMOUNT, 100);
+
+        // rewards, userRewardPerTokenPaid, _balances, _totalSupply and eventSequence
+        assertEquals(5, harness.getStateWrites());
+        // Fee transfer, allowance and transferFrom
+        assertEquals(3, harness.getExternalCalls());
+        // OperationFeePaid and Staked
+        assertEquals(2, harness.getEvents());
+        assertEquals(2, harness.getLastEvents().size());
+        assertEquals(FEE, harness.getFeesCollected());
+        assertEquals(AMOUNT, harness._balanceOf("alice"));
+    }
+
+    @Test
+    public void revertedCallLeavesNoTrace() {
+        StakeHarness harness = new StakeHarness(FEE);
+
+        try {
+            harness.stake("alice", BigInteger.ZERO, AMOUNT, 100);
+            fail("Stake without fee must revert");
+        } catch (IllegalStateException e) {
+            assertEquals("Operation Fee not Paid", e.getMessage());
+        }
+
+        assertEquals(0, harness.getStateWrites());
+        assertEquals(0, harness.getEvents());
+        assertEquals(0, harness.getEventSequence());
+        assertEquals(BigInteger.ZERO, harness.balanceOf(StakeHarness.CONTRACT));
+
+        // The rewards entries written before the revert were rolled back, so they are new again
+        harness.stake("alice", FEE, AMOUNT, 100);
+        assertEquals(5, harness.getStateWrites());
+    }
+
+    @Test
+    public void viewsAreNotCounted() {
+        StakeHarness harness = new StakeHarness(FEE);
+        harness.stake("alice", FEE, AMOUNT, 100);
+        long reads = harness.getMapReads();
+        long writes = harness.getStateWrites();
+
+        harness.earned("alice", 200);
+        harness.view(200, "allTimeEarned", "alice");
+
+        assertEquals(reads, harness.getMapReads());
+        assertEquals(writes, harness.getStateWrites());
+    }
+
+    @Test
+    public void rewardsArePaidFromTheContractBalance() {
+        StakeHarness harness = new StakeHarness(FEE);
+        BigInteger revenue = BigInteger.valueOf(StakeHarness.getDuration() * 1_000);
+
+        harness.stake("alice", FEE, AMOUNT, 100);
+        harness._payable(StakeHarness.TREASURY, revenue, 100);
+        BigInteger earned = harness.earned("alice", 100 + StakeHarness.getDuration());
+        harness.getReward("alice", FEE, 100 + StakeHarness.getDuration());
+
+        assertEquals(earned, harness.balanceOf("alice"));
+        assertEquals(earned, harness.getRewardsPaid());
+        assertEquals(revenue, harness.getRewardsNotified());
+        assertEquals(revenue.subtract(earned), harness.balanceOf(StakeHarness.CONTRACT));
+    }
+}
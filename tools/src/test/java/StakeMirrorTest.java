@@ -0,0 +1,178 @@
+import io.nuls.contract.sdk.Event;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * StakeMirror rebuilt from the events of the real Stake contract answers
+ * the same views as the contract after every call
+ */
+public class StakeMirrorTest {
+
+    private static final BigInteger FEE     = BigInteger.valueOf(1_000_000);
+    private static final BigInteger AMOUNT  = BigInteger.valueOf(1_000_000_000);
+    private static final long       HOUR    = 3600;
+    private static final List<String> USERS = Arrays.asList("bob", "alice", "carol");
+
+    private StakeHarness harness;
+    private StakeMirror mirror;
+    private BigInteger reward;
+
+    @Before
+    public void setUp() {
+        harness = new StakeHarness(FEE);
+        mirror = new StakeMirror();
+        reward = BigInteger.valueOf(1000 * StakeHarness.getDuration());
+    }
+
+    @Test
+    public void perSecondMode() {
+        stake("bob", AMOUNT, 100);
+        notifyReward(reward, 200);
+        stake("alice", AMOUNT.multiply(BigInteger.valueOf(3)), 5_000);
+        getReward("bob", 9_000);
+        stake("bob", AMOUNT, 9_500);
+        notifyReward(reward, 50_000);
+        getReward("alice", 60_000);
+        getReward("carol", 61_000);
+        getReward("bob", 400_000);
+        assertTrue(harness.allTimeEarned("bob", 400_000).signum() > 0);
+    }
+
+    @Test
+    public void epochMode() {
+        setEpochLength(HOUR, 0);
+        notifyReward(reward, 0);
+        stake("bob", AMOUNT, 100);
+        stake("alice", AMOUNT, HOUR + 100);
+        stake("alice", AMOUNT, HOUR + 200);
+        getReward("bob", 3 * HOUR + 10);
+        stake("carol", AMOUNT, 3 * HOUR + 20);
+        notifyReward(reward, 5 * HOUR + 10);
+        getReward("alice", 7 * HOUR);
+        getReward("carol", 9 * HOUR);
+        setEpochLength(0, 10 * HOUR);
+        stake("bob", AMOUNT, 11 * HOUR);
+        getReward("bob", 12 * HOUR);
+    }
+
+    @Test
+    public void valuesBeyondLong() {
+        // Rewards, rewards per token and balances far beyond a long take the BigInteger path of the table
+        BigInteger big = BigInteger.TEN.pow(18).multiply(BigInteger.valueOf(StakeHarness.getDuration()));
+        BigInteger whale = BigInteger.TEN.pow(30);
+        stake("alice", AMOUNT, 100);
+        notifyReward(big, 200);
+        assertTrue(mirror.earned("alice", 50_000).bitLength() > 63);
+        assertTrue(mirror.rewardPerToken(50_000).bitLength() > 63);
+        stake("bob", whale, 50_000);
+        getReward("alice", 60_000);
+        getReward("bob", 70_000);
+
+        setEpochLength(HOUR, 70_000);
+        stake("carol", whale, 70_100);
+        notifyReward(big, 80_000);
+        getReward("carol", 90_000);
+        getReward("alice", 90_000);
+    }
+
+    @Test
+    public void mixedRunReplaysFromEventsAlone() {
+        // Small rewards so many claims are dusted out, also in epoch mode where they activate pending supply
+        Random random = new Random(7);
+        BigInteger small = BigInteger.valueOf(20 * StakeHarness.getDuration());
+        long timestamp = 0;
+        int reverted = 0;
+        int dustedActivations = 0;
+        for (int i = 0; i < 400; i++) {
+            timestamp += random.nextInt(2 * (int) HOUR);
+            String user = USERS.get(random.nextInt(USERS.size()));
+            int action = random.nextInt(20);
+            try {
+                if (action < 7) {
+                    harness.stake(user, random.nextInt(10) == 0 ? BigInteger.ZERO : FEE,
+                            AMOUNT.multiply(BigInteger.valueOf(1 + random.nextInt(5))), timestamp);
+                } else if (action < 15) {
+                    harness.getReward(user, FEE, timestamp);
+                } else if (action < 18) {
+                    BigInteger amount = random.nextBoolean() ? small : reward;
+                    harness.notifyRewardAmount(StakeHarness.ADMIN, amount, amount, timestamp);
+                } else {
+                    harness.setEpochLength(random.nextBoolean() ? 0 : HOUR * (1 + random.nextInt(3)), timestamp);
+                }
+            } catch (IllegalStateException e) {
+                // Reverted calls emit nothing
+                reverted++;
+                continue;
+            }
+            List<Event> events = harness.getLastEvents();
+            if (events.size() == 2 && events.get(0) instanceof Stake.PendingSupplyActivated
+                    && events.get(1) instanceof Stake.OperationFeePaid) {
+                dustedActivations++;
+            }
+            sync(timestamp);
+        }
+        assertTrue(reverted > 0);
+        assertTrue(dustedActivations > 0);
+    }
+
+    @Test
+    public void missingEventIsDetected() {
+        stake("bob", AMOUNT, 100);
+        harness.stake("alice", FEE, AMOUNT, 200);
+        harness.stake("alice", FEE, AMOUNT, 300);
+        try {
+            mirror.apply(300, harness.getLastEvents());
+            fail("Gap in the event stream not detected");
+        } catch (IllegalStateException e) {
+            assertEquals("Expected event 3 but got 5", e.getMessage());
+        }
+    }
+
+    private void stake(String user, BigInteger amount, long timestamp) {
+        harness.stake(user, FEE, amount, timestamp);
+        sync(timestamp);
+    }
+
+    private void getReward(String user, long timestamp) {
+        harness.getReward(user, FEE, timestamp);
+        sync(timestamp);
+    }
+
+    private void notifyReward(BigInteger amount, long timestamp) {
+        harness.notifyRewardAmount(StakeHarness.ADMIN, amount, amount, timestamp);
+        sync(timestamp);
+    }
+
+    private void setEpochLength(long epochLength, long timestamp) {
+        harness.setEpochLength(epochLength, timestamp);
+        sync(timestamp);
+    }
+
+    private void sync(long timestamp) {
+        mirror.apply(timestamp, harness.getLastEvents());
+        assertEquals(harness.getEventSequence(), mirror.getSequence());
+        // Now, and later without any further call
+        assertViews(timestamp);
+        assertViews(timestamp + HOUR + 1);
+    }
+
+    private void assertViews(long timestamp) {
+        assertEquals(harness.totalSupply(), mirror.totalSupply());
+        assertEquals(harness.getPendingSupply(), mirror.getPendingSupply());
+        for (String user : USERS) {
+            assertEquals(user + " earned at " + timestamp, harness.earned(user, timestamp), mirror.earned(user, timestamp));
+            assertEquals(user + " allTimeEarned at " + timestamp, harness.allTimeEarned(user, timestamp), mirror.allTimeEarned(user, timestamp));
+            assertEquals(harness._balanceOf(user), mirror.balanceOf(user));
+            assertEquals(harness.getPendingBalance(user, timestamp), mirror.getPendingBalance(user, timestamp));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TraceReplay baselines pass against an identical replay and flag a
+ * replay that costs more or reverts differently
+ */
+public class TraceReplayTest {
+
+    private static final BigInteger FEE     = BigInteger.valueOf(1_000_000);
+    private static final BigInteger AMOUNT  = BigInteger.valueOf(1_000_000_000);
+
+    private CallTrace trace;
+
+    @Before
+    public void setUp() {
+        BigInteger reward = BigInteger.valueOf(1000 * StakeHarness.getDuration());
+        trace = new CallTrace();
+        trace.stake(100, "bob", FEE, AMOUNT);
+        trace.notifyRewardAmount(200, StakeHarness.ADMIN, reward, reward);
+        trace.stake(300, "alice", FEE, AMOUNT);
+        trace.stake(400, "carol", BigInteger.ZERO, AMOUNT);   // Reverts, no operation fee
+        trace.getReward(5_000, "bob", FEE);
+        trace._payable(6_000, StakeHarness.TREASURY, AMOUNT);
+        trace.getReward(9_000, "alice", FEE);
+    }
+
+    @Test
+    public void identicalReplayPasses() {
+        Properties baseline = replay().toBaseline();
+        assertEquals("1", baseline.getProperty("stake.reverted"));
+        assertEquals("7", baseline.getProperty("total.calls"));
+
+        assertEquals(Arrays.<String>asList(), replay().compare(baseline, -1));
+    }
+
+    @Test
+    public void higherCostFails() {
+        Properties baseline = replay().toBaseline();
+        baseline.setProperty("getReward.stateWrites", "0");
+        baseline.setProperty("total.mapReads", "0");
+
+        List<String> regressions = replay().compare(baseline, -1);
+        assertEquals(2, regressions.size());
+        assertTrue(regressions.get(0), regressions.get(0).startsWith("getReward: stateWrites/call 0.00 -> "));
+        assertTrue(regressions.get(1), regressions.get(1).startsWith("total: mapReads/call 0.00 -> "));
+    }
+
+    @Test
+    public void revertedCountChangeFails() {
+        Properties baseline = replay().toBaseline();
+        baseline.setProperty("stake.reverted", "0");
+        baseline.setProperty("total.reverted", "0");
+
+        assertEquals(Arrays.asList("stake: reverted 0 -> 1", "total: reverted 0 -> 1"), replay().compare(baseline, -1));
+    }
+
+    @Test
+    public void callsMissingOnEitherSideFail() {
+        Properties baseline = replay().toBaseline();
+        baseline.setProperty("withdraw.calls", "3");
+        baseline.remove("_payable.calls");
+        baseline.setProperty("total.calls", "10");
+
+        // Followed by the per call counters of the total, now averaged over fewer calls
+        List<String> regressions = replay().compare(baseline, -1);
+        assertEquals(Arrays.asList("withdraw: missing from replay", "_payable: missing from baseline", "total: calls 10 -> 7"),
+                regressions.subList(0, 3));
+    }
+
+    @Test
+    public void throughputDropBeyondToleranceFails() {
+        // Only the total is held to a throughput, real timings of a few calls are too noisy to compare
+        Properties baseline = replay().toBaseline();
+        for (String key : baseline.stringPropertyNames()) {
+            if (key.endsWith(".throughput")) {
+                baseline.setProperty(key, "0");
+            }
+        }
+        baseline.setProperty("total.throughput", String.valueOf(Double.MAX_VALUE));
+
+        assertEquals(Arrays.<String>asList(), replay().compare(baseline, -1));
+        List<String> regressions = replay().compare(baseline, 50);
+        assertEquals(1, regressions.size());
+        assertTrue(regressions.get(0), regressions.get(0).startsWith("total: calls/s "));
+    }
+
+    private TraceReplay replay() {
+        return TraceReplay.run(trace, new StakeHarness(FEE));
+    }
+}